@@ -0,0 +1,75 @@
+package dev.leighton.movies;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Per-request credential checks. passwordMatches is one login verified through
+ * SecurityConfig.passwordEncoder() at each BCrypt cost, so its ops/s is the login
+ * throughput of a single core. verifyToken is the equivalent check in token mode.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthBenchmark {
+
+  @Param({ "8", "10", "12" })
+  public int bcryptStrength;
+
+  private PasswordEncoder passwordEncoder;
+
+  private String hash;
+
+  private TokenService tokenService;
+
+  private String token;
+
+  @Setup
+  public void setUp() throws Exception {
+    SecurityConfig config = new SecurityConfig();
+    ReflectionTestUtils.setField(config, "bcryptStrength", bcryptStrength);
+    // Same verify timer as the app, registered in a throwaway registry
+    ReflectionTestUtils.setField(
+      config,
+      "meterRegistry",
+      new StaticListableBeanFactory(
+        Map.of("meterRegistry", new SimpleMeterRegistry())
+      ).getBeanProvider(MeterRegistry.class)
+    );
+    passwordEncoder = config.passwordEncoder();
+    hash = passwordEncoder.encode("correct horse battery staple");
+
+    tokenService = new TokenService("benchmark-secret", Duration.ofHours(1));
+    token = tokenService.issue("benchmark-user");
+  }
+
+  @Benchmark
+  public boolean passwordMatches() {
+    return passwordEncoder.matches("correct horse battery staple", hash);
+  }
+
+  @Benchmark
+  public Object verifyToken() {
+    return tokenService.verify(token);
+  }
+}
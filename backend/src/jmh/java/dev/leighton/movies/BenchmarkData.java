@@ -0,0 +1,119 @@
+package dev.leighton.movies;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.bson.types.ObjectId;
+
+/**
+ * Builds catalogs shaped like the production movies collection: long backdrop
+ * URL lists, a few genres per movie and a handful of embedded reviews.
+ */
+final class BenchmarkData {
+
+  private static final String[] GENRES = {
+    "Action",
+    "Adventure",
+    "Animation",
+    "Comedy",
+    "Crime",
+    "Drama",
+    "Family",
+    "Fantasy",
+    "Horror",
+    "Mystery",
+    "Romance",
+    "Science Fiction",
+    "Thriller",
+  };
+
+  private static final String[] WORDS = {
+    "the", "last", "dark", "night", "return", "of", "lost", "city", "star",
+    "war", "king", "shadow", "rising", "legend", "secret", "river", "fire",
+    "ice", "empire", "ghost", "silent", "blade", "storm", "black", "golden",
+  };
+
+  private BenchmarkData() {}
+
+  static List<Movie> movies(int count, int reviewsPerMovie) {
+    Random random = new Random(42);
+    List<Movie> movies = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String imdbId = String.format("tt%07d", i);
+      List<String> backdrops = new ArrayList<>();
+      for (int b = 0; b < 10; b++) {
+        backdrops.add(
+          "https://image.tmdb.org/t/p/original/" + new ObjectId().toHexString() + ".jpg"
+        );
+      }
+      Movie movie = new Movie(
+        imdbId,
+        title(random),
+        "2022-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10),
+        "https://www.youtube.com/watch?v=" + new ObjectId().toHexString().substring(0, 11),
+        "https://image.tmdb.org/t/p/w500/" + new ObjectId().toHexString() + ".jpg",
+        backdrops,
+        genres(random)
+      );
+      movie.setId(new ObjectId());
+      List<Review> reviews = new ArrayList<>();
+      for (int r = 0; r < reviewsPerMovie; r++) {
+        Review review = new Review(
+          "Review " + r + " of " + movie.getTitle() + ": " + title(random) + " " + title(random),
+          LocalDateTime.now(),
+          LocalDateTime.now()
+        );
+        review.setId(new ObjectId());
+        review.setImdbId(imdbId);
+        reviews.add(review);
+      }
+      movie.setReviewIds(reviews);
+      movies.add(movie);
+    }
+    return movies;
+  }
+
+  static List<MovieCard> cards(List<Movie> movies) {
+    List<MovieCard> cards = new ArrayList<>(movies.size());
+    for (Movie movie : movies) {
+      cards.add(
+        new MovieCard(
+          movie.getId(),
+          movie.getImdbId(),
+          movie.getTitle(),
+          movie.getReleaseDate(),
+          movie.getTrailerLink(),
+          movie.getPoster(),
+          movie.getGenres()
+        )
+      );
+    }
+    return cards;
+  }
+
+  private static String title(Random random) {
+    int words = 1 + random.nextInt(4);
+    StringBuilder title = new StringBuilder();
+    for (int w = 0; w < words; w++) {
+      String word = WORDS[random.nextInt(WORDS.length)];
+      if (w > 0) {
+        title.append(' ');
+      }
+      title.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+    }
+    return title.toString();
+  }
+
+  private static List<String> genres(Random random) {
+    List<String> genres = new ArrayList<>();
+    int count = 1 + random.nextInt(3);
+    while (genres.size() < count) {
+      String genre = GENRES[random.nextInt(GENRES.length)];
+      if (!genres.contains(genre)) {
+        genres.add(genre);
+      }
+    }
+    return genres;
+  }
+}
@@ -0,0 +1,95 @@
+package dev.leighton.movies;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Service-layer read paths with the database replaced by in-memory data:
+ * MovieService reads served from MovieCache, snapshot lookups and title search.
+ * Genre faceting is compared against the Mongo query in GenreBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogBenchmark {
+
+  @Param({ "1000", "10000" })
+  public int catalogSize;
+
+  private MovieService movieService;
+
+  private MovieSnapshots snapshots;
+
+  private MovieSearchIndex searchIndex;
+
+  @Setup
+  public void setUp() {
+    List<Movie> movies = BenchmarkData.movies(catalogSize, 5);
+    List<MovieCard> cards = BenchmarkData.cards(movies);
+
+    // Pre-load the cache so every service call is served in memory
+    MovieCache cache = new MovieCache(catalogSize * 2L, Duration.ofHours(1));
+    cache.getCatalog(() -> movies);
+    for (Movie movie : movies) {
+      cache.getMovie(movie.getImdbId(), id -> Optional.of(movie));
+    }
+
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    snapshots = new MovieSnapshots(catalogSize * 2L, Duration.ofHours(1));
+    ReflectionTestUtils.setField(snapshots, "objectMapper", objectMapper);
+    ReflectionTestUtils.setField(snapshots, "enabled", true);
+    ReflectionTestUtils.setField(snapshots, "gzip", true);
+
+    movieService = new MovieService();
+    ReflectionTestUtils.setField(movieService, "cache", cache);
+    ReflectionTestUtils.setField(movieService, "snapshots", snapshots);
+
+    searchIndex = new MovieSearchIndex();
+    searchIndex.rebuild(cards);
+  }
+
+  @Benchmark
+  public Object findAllMoviesCached() {
+    return movieService.findAllMovies();
+  }
+
+  @Benchmark
+  public Object findMovieByImdbIdCached() {
+    return movieService.findMovieByImdbId("tt0000042");
+  }
+
+  @Benchmark
+  public Object catalogSnapshot() {
+    return snapshots.getCatalog(movieService);
+  }
+
+  @Benchmark
+  public Object searchPrefix() {
+    return searchIndex.search("the da", 10);
+  }
+
+  @Benchmark
+  public Object searchSingleLetter() {
+    // Worst case for type-ahead: the prefix matches most of the vocabulary
+    return searchIndex.search("s", 10);
+  }
+}
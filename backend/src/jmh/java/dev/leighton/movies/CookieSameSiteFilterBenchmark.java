@@ -0,0 +1,92 @@
+package dev.leighton.movies;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Per-request overhead of SecurityConfig.CookieSameSiteFilter for a logged-in
+ * request that carries a session (the cookie is rewritten) and one without (token
+ * mode or anonymous), with and without trace sampling.
+ * baseline measures building the mock request and response on their own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CookieSameSiteFilterBenchmark {
+
+  @Param({ "true", "false" })
+  public boolean withSession;
+
+  @Param({ "0.0", "1.0" })
+  public double sampleRate;
+
+  private static final FilterChain NO_OP_CHAIN = (request, response) -> {};
+
+  private RequestDiagnostics diagnostics;
+
+  private SecurityConfig.CookieSameSiteFilter filter;
+
+  @Setup
+  public void setUp() {
+    DiagnosticsProperties properties = new DiagnosticsProperties();
+    properties.setDefaultSampleRate(sampleRate);
+    // Keep the background writer from logging during the measurement
+    properties.setDrainInterval(Duration.ofHours(1));
+    diagnostics = new RequestDiagnostics();
+    ReflectionTestUtils.setField(diagnostics, "properties", properties);
+    diagnostics.start();
+    filter = new SecurityConfig.CookieSameSiteFilter(diagnostics);
+  }
+
+  @TearDown
+  public void tearDown() {
+    diagnostics.stop();
+  }
+
+  @Benchmark
+  public MockHttpServletResponse baseline() {
+    request(withSession);
+    return new MockHttpServletResponse();
+  }
+
+  @Benchmark
+  public MockHttpServletResponse filter() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request(withSession), response, NO_OP_CHAIN);
+    return response;
+  }
+
+  private static MockHttpServletRequest request(boolean withSession) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/movies");
+    if (withSession) {
+      // The filter only looks at an existing session; login is what creates one
+      request.setSession(new MockHttpSession());
+    }
+    request.addHeader("Accept", "application/json");
+    request.addHeader("User-Agent", "Mozilla/5.0 (benchmark)");
+    request.addHeader("Origin", "https://movies.example");
+    request.setCookies(new Cookie("JSESSIONID", "0123456789ABCDEF"));
+    return request;
+  }
+}
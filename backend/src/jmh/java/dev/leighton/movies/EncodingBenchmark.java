@@ -0,0 +1,90 @@
+package dev.leighton.movies;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Encode CPU per response format for the catalog and a single movie, with and without
+ * gzip. Encoded sizes are printed once per trial, since JMH only reports time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodingBenchmark {
+
+  @Param({ "json", "cbor", "smile" })
+  public String format;
+
+  @Param({ "1000" })
+  public int catalogSize;
+
+  private ObjectMapper mapper;
+
+  private List<Movie> movies;
+
+  @Setup
+  public void setUp() throws IOException {
+    // Built the same way as BinaryFormatsConfig builds the converters
+    mapper = switch (format) {
+      case "cbor" -> Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+      case "smile" -> Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+      default -> Jackson2ObjectMapperBuilder.json().build();
+    };
+    movies = BenchmarkData.movies(catalogSize, 5);
+
+    byte[] catalog = mapper.writeValueAsBytes(movies);
+    byte[] movie = mapper.writeValueAsBytes(movies.get(0));
+    System.out.printf(
+      "%n%s: catalog %d bytes (%d gzipped), single movie %d bytes (%d gzipped)%n",
+      format,
+      catalog.length,
+      gzip(catalog).length,
+      movie.length,
+      gzip(movie).length
+    );
+  }
+
+  @Benchmark
+  public byte[] encodeCatalog() throws IOException {
+    return mapper.writeValueAsBytes(movies);
+  }
+
+  @Benchmark
+  public byte[] encodeCatalogGzip() throws IOException {
+    return gzip(mapper.writeValueAsBytes(movies));
+  }
+
+  @Benchmark
+  public byte[] encodeSingleMovie() throws IOException {
+    return mapper.writeValueAsBytes(movies.get(0));
+  }
+
+  private static byte[] gzip(byte[] body) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+    try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+      gzipOut.write(body);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,122 @@
+package dev.leighton.movies;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * The /api/v1/movies/genres response built from the GenreIndex bitmaps, against
+ * the same page, total and per-genre counts queried from Mongo (a find, a count
+ * and an $unwind/$group aggregation). The Mongo side runs against the in-process
+ * mongo-java-server the load test uses, so it leaves out the network round trips
+ * a real deployment adds and is a lower bound for the query path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GenreBenchmark {
+
+  private static final int LIMIT = 20;
+
+  @Param({ "1000", "10000" })
+  public int catalogSize;
+
+  private GenreIndex genreIndex;
+
+  private MongoServer server;
+
+  private MongoClient client;
+
+  private MongoTemplate mongoTemplate;
+
+  @Setup
+  public void setUp() {
+    List<MovieCard> cards = BenchmarkData.cards(BenchmarkData.movies(catalogSize, 0));
+
+    genreIndex = new GenreIndex();
+    genreIndex.rebuild(cards);
+
+    server = new MongoServer(new MemoryBackend());
+    client = MongoClients.create(server.bindAndGetConnectionString());
+    mongoTemplate = new MongoTemplate(client, "movies");
+    mongoTemplate.insert(cards, "movies");
+    mongoTemplate.indexOps("movies").ensureIndex(new Index("genres", Sort.Direction.ASC));
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.close();
+    server.shutdownNow();
+  }
+
+  @Benchmark
+  public Object bitmapAll() {
+    return genreIndex.facets(List.of("Action", "Drama"), true, null, LIMIT);
+  }
+
+  @Benchmark
+  public Object mongoAll() {
+    return query(Criteria.where("genres").all("Action", "Drama"));
+  }
+
+  @Benchmark
+  public Object bitmapAny() {
+    return genreIndex.facets(List.of("Comedy", "Romance", "Family"), false, null, LIMIT);
+  }
+
+  @Benchmark
+  public Object mongoAny() {
+    return query(Criteria.where("genres").in("Comedy", "Romance", "Family"));
+  }
+
+  // First page, total and per-genre counts, as GenreIndex.facets returns them
+  private GenreIndex.GenreFacets query(Criteria filter) {
+    Query page = new Query(filter)
+      .with(Sort.by(Sort.Direction.ASC, "_id"))
+      .limit(LIMIT);
+    page.fields().include(MovieCard.FIELDS);
+    List<MovieCard> movies = mongoTemplate.find(page, MovieCard.class, "movies");
+
+    long total = mongoTemplate.count(new Query(filter), "movies");
+
+    Aggregation aggregation = Aggregation.newAggregation(
+      Aggregation.match(filter),
+      Aggregation.unwind("genres"),
+      Aggregation.group("genres").count().as("count"),
+      Aggregation.sort(Sort.by(Sort.Direction.DESC, "count").and(Sort.by("_id")))
+    );
+    Map<String, Integer> counts = new LinkedHashMap<>();
+    for (Document count : mongoTemplate.aggregate(aggregation, "movies", Document.class)) {
+      counts.put(count.getString("_id"), count.getInteger("count"));
+    }
+
+    return new GenreIndex.GenreFacets((int) total, counts, movies, null);
+  }
+}
@@ -0,0 +1,53 @@
+package dev.leighton.movies;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Cost of encoding the catalog the way GET /api/v1/movies does without snapshots.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MovieSerializationBenchmark {
+
+  @Param({ "100", "1000" })
+  public int catalogSize;
+
+  private ObjectMapper objectMapper;
+
+  private List<Movie> movies;
+
+  @Setup
+  public void setUp() {
+    // Same module set Spring Boot registers on its ObjectMapper
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    movies = BenchmarkData.movies(catalogSize, 5);
+  }
+
+  @Benchmark
+  public byte[] serializeCatalog() throws Exception {
+    return objectMapper.writeValueAsBytes(movies);
+  }
+
+  @Benchmark
+  public byte[] serializeSingleMovie() throws Exception {
+    return objectMapper.writeValueAsBytes(movies.get(0));
+  }
+}
@@ -0,0 +1,448 @@
+package dev.leighton.movies;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.bson.types.ObjectId;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * End-to-end load test for the backend.
+ * Boots MoviesApplication against an in-process MongoDB stand-in (mongo-java-server),
+ * seeds a catalog, then sends a mixed workload at a constant arrival rate (open model).
+ * Latency is measured from each request's scheduled start time, so a stalled server
+ * shows up in the percentiles instead of silently lowering the offered load.
+ *
+ * Options are Spring-style properties passed as arguments (with or without "--"):
+ *   loadtest.movies=1000          movies to seed
+ *   loadtest.reviews=5000         reviews to seed, spread over the movies
+ *   loadtest.users=50             users to seed and log in
+ *   loadtest.rate=200             requests per second
+ *   loadtest.warmup=10s           load before measuring
+ *   loadtest.duration=30s         measured load
+ *   loadtest.mix=list:5,page:15,get:50,search:10,review:15,login:5
+ *                                (also available: stream, top)
+ *   loadtest.output=target/loadtest-result.json
+ * Any other property (for example movies.auth.mode or spring.threads.virtual.enabled)
+ * is passed through to the application. In session auth mode the users log in once
+ * and replay their JSESSIONID cookies (set movies.session.store=mongo to measure the
+ * shared session store).
+ */
+public class LoadTestHarness {
+
+  private static final String PASSWORD = "load-test-password";
+
+  private static final String[] WORDS = {
+    "the", "last", "dark", "night", "return", "of", "lost", "city", "star",
+    "war", "king", "shadow", "rising", "legend", "secret", "river", "fire",
+  };
+
+  private static final String[] GENRES = {
+    "Action", "Comedy", "Drama", "Fantasy", "Horror", "Romance", "Thriller",
+  };
+
+  private final HttpClient client = HttpClient.newBuilder()
+    .connectTimeout(Duration.ofSeconds(5))
+    .build();
+
+  private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  private ObjectMapper objectMapper;
+
+  private String baseUrl;
+
+  private List<String> imdbIds;
+
+  // Authorization or Cookie header per logged-in user, depending on movies.auth.mode
+  private List<Credential> credentials;
+
+  private int userCount;
+
+  public static void main(String[] args) throws Exception {
+    new LoadTestHarness().run(args);
+    System.exit(0);
+  }
+
+  private void run(String[] args) throws Exception {
+    // Devtools reads this before the environment exists, so it has to be a system property
+    System.setProperty("spring.devtools.restart.enabled", "false");
+    MongoServer mongo = new MongoServer(new MemoryBackend());
+    InetSocketAddress address = mongo.bind();
+
+    // Harness defaults first, anything on the command line wins
+    Map<String, String> properties = new LinkedHashMap<>();
+    properties.put("MONGODB_URI", "mongodb://localhost:" + address.getPort() + "/movies");
+    properties.put("FRONTEND_URL", "http://localhost");
+    properties.put("server.port", "0");
+    properties.put("management.server.port", "0");
+    properties.put("movies.auth.mode", "token");
+    properties.put("movies.diagnostics.enabled", "false");
+    properties.put("logging.level.de.bwaldvogel", "WARN");
+    // The stand-in server does not implement the "hello" command the Mongo health check sends
+    properties.put("management.health.mongo.enabled", "false");
+    // Every simulated user shares one client IP; measure the app, not the limiter
+    properties.put("movies.rate-limit.enabled", "false");
+    for (String arg : args) {
+      String option = arg.startsWith("--") ? arg.substring(2) : arg;
+      int equals = option.indexOf('=');
+      if (equals > 0) {
+        properties.put(option.substring(0, equals), option.substring(equals + 1));
+      }
+    }
+    List<String> springArgs = new ArrayList<>();
+    properties.forEach((key, value) -> springArgs.add("--" + key + "=" + value));
+
+    ConfigurableApplicationContext context = SpringApplication.run(
+      MoviesApplication.class,
+      springArgs.toArray(new String[0])
+    );
+    try {
+      Environment env = context.getEnvironment();
+      objectMapper = context.getBean(ObjectMapper.class);
+      baseUrl = "http://localhost:" + env.getProperty("local.server.port");
+
+      seed(context, env);
+      logIn(env);
+      configureMix(env.getProperty("loadtest.mix", "list:5,page:15,get:50,search:10,review:15,login:5"));
+
+      int rate = env.getProperty("loadtest.rate", Integer.class, 200);
+      Duration warmup = env.getProperty("loadtest.warmup", Duration.class, Duration.ofSeconds(10));
+      Duration duration = env.getProperty("loadtest.duration", Duration.class, Duration.ofSeconds(30));
+
+      System.out.printf("Warming up for %s at %d req/s%n", warmup, rate);
+      drive(rate, warmup);
+      endpoints.values().forEach(Endpoint::reset);
+      maxInFlight.set(0);
+
+      System.out.printf("Measuring for %s at %d req/s%n", duration, rate);
+      drive(rate, duration);
+
+      report(rate, duration, env.getProperty("loadtest.output", "target/loadtest-result.json"));
+    } finally {
+      context.close();
+      mongo.shutdown();
+    }
+  }
+
+  private void seed(ConfigurableApplicationContext context, Environment env) {
+    int movieCount = env.getProperty("loadtest.movies", Integer.class, 1000);
+    int reviewCount = env.getProperty("loadtest.reviews", Integer.class, 5000);
+    userCount = env.getProperty("loadtest.users", Integer.class, 50);
+    MongoTemplate mongoTemplate = context.getBean(MongoTemplate.class);
+    Random random = new Random(42);
+
+    long start = System.nanoTime();
+    List<Movie> movies = new ArrayList<>(movieCount);
+    imdbIds = new ArrayList<>(movieCount);
+    for (int i = 0; i < movieCount; i++) {
+      String imdbId = String.format("tt%07d", i);
+      imdbIds.add(imdbId);
+      List<String> backdrops = new ArrayList<>();
+      for (int b = 0; b < 10; b++) {
+        backdrops.add("https://image.tmdb.org/t/p/original/" + new ObjectId().toHexString() + ".jpg");
+      }
+      Movie movie = new Movie(
+        imdbId,
+        title(random),
+        "2022-01-01",
+        "https://www.youtube.com/watch?v=" + new ObjectId().toHexString().substring(0, 11),
+        "https://image.tmdb.org/t/p/w500/" + new ObjectId().toHexString() + ".jpg",
+        backdrops,
+        List.of(GENRES[random.nextInt(GENRES.length)], GENRES[random.nextInt(GENRES.length)])
+      );
+      movie.setReviewIds(new ArrayList<>());
+      movies.add(movie);
+    }
+    mongoTemplate.insert(movies, Movie.class);
+
+    List<Review> reviews = new ArrayList<>(reviewCount);
+    for (int i = 0; i < reviewCount; i++) {
+      Review review = new Review("Seeded review " + i, LocalDateTime.now(), LocalDateTime.now());
+      review.setImdbId(imdbIds.get(random.nextInt(movieCount)));
+      reviews.add(review);
+    }
+    if (!reviews.isEmpty()) {
+      mongoTemplate.insert(reviews, Review.class);
+      BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Movie.class);
+      for (Review review : reviews) {
+        bulk.updateOne(
+          new Query(Criteria.where("imdbId").is(review.getImdbId())),
+          new Update().push("reviewIds", review.getId()).inc("reviewCount", 1)
+        );
+      }
+      bulk.execute();
+    }
+
+    // One BCrypt hash shared by every seeded user keeps seeding fast
+    String hash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+    List<User> users = new ArrayList<>(userCount);
+    for (int i = 0; i < userCount; i++) {
+      users.add(new User("loadtest-user-" + i, hash));
+    }
+    mongoTemplate.insert(users, User.class);
+
+    // The app built its indexes and caches before the data existed
+    context.getBean(CatalogIndexer.class).rebuild();
+    context.getBean(UsernameFilter.class).rebuild();
+    context.getBean(ReviewStats.class).rebuild();
+    context.getBean(MovieCache.class).evictAll();
+    context.getBean(MovieSnapshots.class).evictAll();
+
+    System.out.printf(
+      "Seeded %d movies, %d reviews and %d users in %d ms%n",
+      movieCount,
+      reviewCount,
+      userCount,
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+    );
+  }
+
+  private void logIn(Environment env) throws Exception {
+    boolean tokenMode = "token".equalsIgnoreCase(env.getProperty("movies.auth.mode"));
+    credentials = new ArrayList<>(userCount);
+    for (int i = 0; i < userCount; i++) {
+      HttpResponse<String> response = client.send(loginRequest(i), HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException("Login failed: " + response.statusCode() + " " + response.body());
+      }
+      if (tokenMode) {
+        JsonNode body = objectMapper.readTree(response.body());
+        credentials.add(new Credential("Authorization", "Bearer " + body.get("token").asText()));
+      } else {
+        credentials.add(new Credential("Cookie", sessionCookies(response)));
+      }
+    }
+  }
+
+  // Several JSESSIONID cookies are set around a login; send them all and let the server pick the live one
+  private static String sessionCookies(HttpResponse<?> response) {
+    Set<String> cookies = new LinkedHashSet<>();
+    for (String header : response.headers().allValues("Set-Cookie")) {
+      String cookie = header.split(";", 2)[0].trim();
+      if (cookie.startsWith("JSESSIONID=")) {
+        cookies.add(cookie);
+      }
+    }
+    if (cookies.isEmpty()) {
+      throw new IllegalStateException("Login response set no session cookie");
+    }
+    return String.join("; ", cookies);
+  }
+
+  private void configureMix(String mix) {
+    for (String part : mix.split(",")) {
+      String[] nameAndWeight = part.trim().split(":");
+      endpoints.put(nameAndWeight[0], new Endpoint(nameAndWeight[0], Integer.parseInt(nameAndWeight[1])));
+    }
+  }
+
+  private void drive(int rate, Duration duration) throws InterruptedException {
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    long total = duration.toNanos() / intervalNanos;
+    int totalWeight = endpoints.values().stream().mapToInt(Endpoint::weight).sum();
+    List<Endpoint> byWeight = new ArrayList<>(endpoints.values());
+    CountDownLatch done = new CountDownLatch((int) total);
+    long start = System.nanoTime();
+
+    for (long i = 0; i < total; i++) {
+      long intended = start + i * intervalNanos;
+      long wait = intended - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+
+      Endpoint endpoint = pick(byWeight, totalWeight);
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      client
+        .sendAsync(request(endpoint.name()), HttpResponse.BodyHandlers.discarding())
+        .whenComplete((response, error) -> {
+          // Measured from the scheduled start, which corrects for coordinated omission
+          long latencyMicros = (System.nanoTime() - intended) / 1000;
+          boolean ok = error == null && response.statusCode() < 400;
+          endpoint.record(latencyMicros, ok);
+          inFlight.decrementAndGet();
+          done.countDown();
+        });
+    }
+    done.await(1, TimeUnit.MINUTES);
+  }
+
+  private HttpRequest request(String name) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    Credential credential = credentials.get(random.nextInt(credentials.size()));
+    String imdbId = imdbIds.get(random.nextInt(imdbIds.size()));
+    return switch (name) {
+      case "list" -> get("/api/v1/movies", credential);
+      case "page" -> get("/api/v1/movies/page?size=20", credential);
+      case "stream" -> get("/api/v1/movies/stream", credential);
+      case "get" -> get("/api/v1/movies/" + imdbId, credential);
+      case "top" -> get("/api/v1/movies/top?window=24h", credential);
+      case "search" -> get("/api/v1/movies/search?q=" + WORDS[random.nextInt(WORDS.length)].substring(0, 2), credential);
+      case "review" -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/reviews"))
+        .header(credential.header(), credential.value())
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(
+          "{\"reviewBody\": \"Load test review\", \"imdbId\": \"" + imdbId + "\"}"
+        ))
+        .build();
+      case "login" -> loginRequest(random.nextInt(userCount));
+      default -> throw new IllegalArgumentException("Unknown endpoint in loadtest.mix: " + name);
+    };
+  }
+
+  private HttpRequest get(String path, Credential credential) {
+    return HttpRequest.newBuilder(URI.create(baseUrl + path))
+      .header(credential.header(), credential.value())
+      .header("Accept-Encoding", "gzip")
+      .GET()
+      .build();
+  }
+
+  private HttpRequest loginRequest(int user) {
+    String form =
+      "username=" + URLEncoder.encode("loadtest-user-" + user, StandardCharsets.UTF_8) +
+      "&password=" + URLEncoder.encode(PASSWORD, StandardCharsets.UTF_8);
+    return HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+      .header("Content-Type", "application/x-www-form-urlencoded")
+      .POST(HttpRequest.BodyPublishers.ofString(form))
+      .build();
+  }
+
+  private static Endpoint pick(List<Endpoint> endpoints, int totalWeight) {
+    int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+    for (Endpoint endpoint : endpoints) {
+      ticket -= endpoint.weight();
+      if (ticket < 0) {
+        return endpoint;
+      }
+    }
+    return endpoints.get(endpoints.size() - 1);
+  }
+
+  private void report(int rate, Duration duration, String output) throws Exception {
+    Map<String, Object> results = new LinkedHashMap<>();
+    results.put("targetRate", rate);
+    results.put("durationSeconds", duration.toSeconds());
+    results.put("maxInFlight", maxInFlight.get());
+    Map<String, Object> perEndpoint = new LinkedHashMap<>();
+
+    System.out.printf(
+      "%n%-8s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+      "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"
+    );
+    for (Endpoint endpoint : endpoints.values()) {
+      Histogram histogram = endpoint.histogram();
+      double throughput = histogram.getTotalCount() / (double) duration.toSeconds();
+      System.out.printf(
+        "%-8s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+        endpoint.name(),
+        histogram.getTotalCount(),
+        endpoint.errors().get(),
+        throughput,
+        millis(histogram.getValueAtPercentile(50)),
+        millis(histogram.getValueAtPercentile(90)),
+        millis(histogram.getValueAtPercentile(99)),
+        millis(histogram.getValueAtPercentile(99.9)),
+        millis(histogram.getMaxValue())
+      );
+      Map<String, Object> stats = new LinkedHashMap<>();
+      stats.put("count", histogram.getTotalCount());
+      stats.put("errors", endpoint.errors().get());
+      stats.put("throughput", throughput);
+      stats.put("p50Ms", millis(histogram.getValueAtPercentile(50)));
+      stats.put("p90Ms", millis(histogram.getValueAtPercentile(90)));
+      stats.put("p99Ms", millis(histogram.getValueAtPercentile(99)));
+      stats.put("p999Ms", millis(histogram.getValueAtPercentile(99.9)));
+      stats.put("maxMs", millis(histogram.getMaxValue()));
+      perEndpoint.put(endpoint.name(), stats);
+    }
+    System.out.printf("max in-flight requests: %d%n", maxInFlight.get());
+    results.put("endpoints", perEndpoint);
+
+    File file = new File(output);
+    if (file.getParentFile() != null) {
+      file.getParentFile().mkdirs();
+    }
+    objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, results);
+    System.out.println("Results written to " + file.getAbsolutePath());
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000.0;
+  }
+
+  private static String title(Random random) {
+    StringBuilder title = new StringBuilder();
+    int words = 1 + random.nextInt(4);
+    for (int w = 0; w < words; w++) {
+      String word = WORDS[random.nextInt(WORDS.length)];
+      title.append(w > 0 ? " " : "").append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+    }
+    return title.toString();
+  }
+
+  private record Endpoint(
+    String name,
+    int weight,
+    Histogram histogram,
+    AtomicLong errors
+  ) {
+    Endpoint(String name, int weight) {
+      // Microsecond values, auto-resizing, 3 significant digits
+      this(name, weight, new ConcurrentHistogram(3), new AtomicLong());
+    }
+
+    void record(long latencyMicros, boolean ok) {
+      histogram.recordValue(Math.max(1, latencyMicros));
+      if (!ok) {
+        errors.incrementAndGet();
+      }
+    }
+
+    void reset() {
+      histogram.reset();
+      errors.set(0);
+    }
+  }
+
+  private record Credential(String header, String value) {}
+}
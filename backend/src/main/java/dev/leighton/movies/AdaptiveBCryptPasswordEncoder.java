@@ -0,0 +1,58 @@
+package dev.leighton.movies;
+
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt encoder that reports a stored hash as needing an upgrade whenever its cost
+ * differs from the configured one, in either direction. The stock encoder only
+ * upgrades weaker hashes, which makes lowering the cost impossible.
+ */
+public class AdaptiveBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+  private final int strength;
+
+  // Optional timer for password checks, the main CPU cost of a login
+  private Timer verifyTimer;
+
+  public AdaptiveBCryptPasswordEncoder(int strength) {
+    super(strength);
+    this.strength = strength;
+  }
+
+  public void setVerifyTimer(Timer verifyTimer) {
+    this.verifyTimer = verifyTimer;
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    if (verifyTimer == null) {
+      return super.matches(rawPassword, encodedPassword);
+    }
+    long start = System.nanoTime();
+    try {
+      return super.matches(rawPassword, encodedPassword);
+    } finally {
+      verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public int getStrength() {
+    return strength;
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    // Hashes look like $2a$10$<salt+hash>; the two digits after the version are the cost
+    if (encodedPassword == null || encodedPassword.length() < 7) {
+      return false;
+    }
+    try {
+      int cost = Integer.parseInt(encodedPassword.substring(4, 6));
+      return cost != strength;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package dev.leighton.movies;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Catalog maintenance for the users listed in movies.admin.usernames
+ * (SecurityConfig turns everyone else away).
+ */
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminController {
+
+  @Autowired
+  private MovieImporter movieImporter;
+
+  @Autowired
+  private MovieExporter movieExporter;
+
+  // Body is NDJSON or a JSON array of movies, optionally gzip-compressed
+  // (Content-Encoding: gzip); it is read as it arrives rather than buffered
+  @PostMapping("/movies/import")
+  public ResponseEntity<?> importMovies(HttpServletRequest request) throws IOException {
+    InputStream body = request.getInputStream();
+    if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+      body = new GZIPInputStream(body, 64 * 1024);
+    }
+    try {
+      MovieImporter.Result result = movieImporter.importMovies(
+        body,
+        "upload by " + request.getUserPrincipal().getName()
+      );
+      return ResponseEntity.ok(result);
+    } catch (IllegalStateException e) {
+      Map<String, String> error = new HashMap<>();
+      error.put("error", e.getMessage());
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+  }
+
+  // Progress of the running import, or the result of the last one
+  @GetMapping("/movies/import")
+  public ResponseEntity<?> getImportStatus() {
+    MovieImporter.Result status = movieImporter.status();
+    if (status == null) {
+      Map<String, String> error = new HashMap<>();
+      error.put("error", "No import has run since startup");
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+    }
+    return ResponseEntity.ok(status);
+  }
+
+  // Every movie with its reviews as gzip-compressed NDJSON. A cut-off download can be
+  // resumed by passing the _id of the last complete line as after.
+  @GetMapping("/movies/export")
+  public ResponseEntity<StreamingResponseBody> exportMovies(
+    @RequestParam(required = false) String after,
+    HttpServletRequest request
+  ) {
+    if (after != null && !ObjectId.isValid(after)) {
+      // The return type has to stay a streaming body, so the error is streamed too
+      return ResponseEntity.badRequest()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(outputStream ->
+          outputStream.write(
+            "{\"error\": \"after must be a movie _id\"}".getBytes(StandardCharsets.UTF_8)
+          )
+        );
+    }
+    ObjectId start = after != null ? new ObjectId(after) : null;
+    // A full export can outlast spring.mvc.async.request-timeout, which is meant for
+    // the NDJSON catalog stream; this one runs until it finishes or the client leaves
+    WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest().setTimeout(-1L);
+    StreamingResponseBody body = outputStream ->
+      movieExporter.export(Channels.newChannel(outputStream), start, "download");
+    return ResponseEntity.ok()
+      .contentType(MediaType.parseMediaType("application/gzip"))
+      .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"movies.ndjson.gz\"")
+      .body(body);
+  }
+}
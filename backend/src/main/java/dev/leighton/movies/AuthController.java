@@ -4,6 +4,7 @@ import java.security.Principal;
 import java.util.HashMap;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -30,20 +31,29 @@ public class AuthController {
   @Autowired
   private AuthenticationManager authenticationManager;
 
+  @Autowired
+  private CustomUserDetailsService userDetailsService;
+
+  @Autowired
+  private UsernameFilter usernameFilter;
+
   @PostMapping("/register")
   public ResponseEntity<?> register(@RequestBody User user) {
-    // Check if username already exists in the database
-    if (userRepository.findByUsername(user.getUsername()) != null) {
+    // Encode the user's password before saving it (never store plaintext passwords)
+    user.setPassword(passwordEncoder.encode(user.getPassword()));
+    try {
+      // Insert the new user; the unique index on username rejects a taken name
+      userRepository.insert(user);
+    } catch (DuplicateKeyException e) {
       // Create error response if username already exists
       Map<String, String> response = new HashMap<>();
       response.put("error", "Username already exists");
       return ResponseEntity.badRequest().body(response); // Returns HTTP 400 Bad Request
     }
-
-    // Encode the user's password before saving it (never store plaintext passwords)
-    user.setPassword(passwordEncoder.encode(user.getPassword()));
-    // Save the new user to the database
-    userRepository.save(user);
+    // Let logins for this name through the username filter right away
+    usernameFilter.add(user.getUsername());
+    // Make sure no stale entry for this username survives in any instance's user cache
+    userDetailsService.userChanged(user.getUsername());
 
     // Create success response
     Map<String, String> response = new HashMap<>();
@@ -79,8 +89,8 @@ public class AuthController {
       return ResponseEntity.status(401).body(response); // Returns HTTP 401 Unauthorized
     }
 
-    // Retrieve user from database using the username from Principal
-    User user = userRepository.findByUsername(principal.getName());
+    // Retrieve user (cached or from the database) using the username from Principal
+    User user = userDetailsService.findUser(principal.getName());
     // Check if user exists
     if (user == null) {
       // Create error response if user not found (unlikely in normal operation)
@@ -0,0 +1,37 @@
+package dev.leighton.movies;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * CBOR (application/cbor) and Smile (application/x-jackson-smile) message converters,
+ * built from Spring Boot's Jackson builder so they encode exactly like the JSON one.
+ * They replace Spring MVC's defaults for these formats and are also used by
+ * MovieSnapshots for the pre-encoded endpoints.
+ */
+@Configuration
+public class BinaryFormatsConfig {
+
+  @Bean
+  public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(
+    Jackson2ObjectMapperBuilder builder
+  ) {
+    return new MappingJackson2CborHttpMessageConverter(
+      builder.factory(new CBORFactory()).build()
+    );
+  }
+
+  @Bean
+  public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(
+    Jackson2ObjectMapperBuilder builder
+  ) {
+    return new MappingJackson2SmileHttpMessageConverter(
+      builder.factory(new SmileFactory()).build()
+    );
+  }
+}
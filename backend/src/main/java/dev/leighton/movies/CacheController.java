@@ -0,0 +1,40 @@
+package dev.leighton.movies;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Exposes hit, miss and eviction counters for the in-process caches
+ * so they can be sized from real traffic.
+ */
+@RestController
+@RequestMapping("/api/v1/cache")
+public class CacheController {
+
+  @Autowired
+  private MovieCache movieCache;
+
+  @Autowired
+  private CustomUserDetailsService userDetailsService;
+
+  @Autowired
+  private UsernameFilter usernameFilter;
+
+  @Autowired
+  private InvalidationBus invalidationBus;
+
+  @GetMapping("/stats")
+  public ResponseEntity<Map<String, Object>> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("movies", movieCache.stats());
+    stats.put("users", userDetailsService.stats());
+    stats.put("usernameFilter", usernameFilter.stats());
+    stats.put("invalidation", invalidationBus.stats());
+    return ResponseEntity.ok(stats);
+  }
+}
@@ -0,0 +1,49 @@
+package dev.leighton.movies;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Read-through loading for Caffeine caches that is safe on virtual threads.
+ * Cache.get(key, loader) runs the loader inside ConcurrentHashMap.compute, which holds
+ * a monitor for the whole database call and pins a virtual thread's carrier. Here only
+ * an empty future is installed under the map lock; the loader then runs on the caller's
+ * thread and concurrent callers for the same key wait on that future.
+ * If the key is invalidated while loading, Caffeine drops the late result instead of
+ * caching it.
+ */
+final class CacheLoads {
+
+  private CacheLoads() {}
+
+  static <K, V> V get(AsyncCache<K, V> cache, K key, Function<K, V> loader) {
+    // getIfPresent records the hit or miss in the cache stats
+    CompletableFuture<V> existing = cache.getIfPresent(key);
+    if (existing == null) {
+      CompletableFuture<V> mine = new CompletableFuture<>();
+      existing = cache.asMap().putIfAbsent(key, mine);
+      if (existing == null) {
+        try {
+          V value = loader.apply(key);
+          // A null value completes the future and Caffeine removes the entry
+          mine.complete(value);
+          return value;
+        } catch (RuntimeException | Error e) {
+          // Failed futures are removed, so the next caller retries
+          mine.completeExceptionally(e);
+          throw e;
+        }
+      }
+    }
+    try {
+      return existing.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+}
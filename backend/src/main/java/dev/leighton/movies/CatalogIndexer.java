@@ -0,0 +1,64 @@
+package dev.leighton.movies;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the in-memory movie indexes (title search and genres) in step with the
+ * movies collection. They are built from one scan of movie cards at startup, updated
+ * batch by batch as an import writes movies, and rebuilt when another instance
+ * reports a catalog change. Rebuilds and batch updates run one at a time, so an
+ * update that lands during a rebuild is applied after it instead of being replaced
+ * by the rebuild's older snapshot.
+ */
+@Component
+public class CatalogIndexer {
+
+  private static final Logger log = LoggerFactory.getLogger(CatalogIndexer.class);
+
+  @Autowired
+  private MovieService movieService;
+
+  @Autowired
+  private MovieSearchIndex searchIndex;
+
+  @Autowired
+  private GenreIndex genreIndex;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void rebuild() {
+    long start = System.nanoTime();
+    List<MovieCard> cards = movieService.findAllCards();
+    searchIndex.rebuild(cards);
+    genreIndex.rebuild(cards);
+    log.info(
+      "Indexed {} movies in {} ms, search index: {}",
+      cards.size(),
+      (System.nanoTime() - start) / 1_000_000,
+      searchIndex.stats()
+    );
+  }
+
+  // Re-reads the given movies and updates both indexes; ones that no longer exist are dropped
+  public synchronized void reindex(Collection<String> imdbIds) {
+    List<MovieCard> cards = movieService.findCards(imdbIds);
+    Set<String> missing = new HashSet<>(imdbIds);
+    for (MovieCard card : cards) {
+      missing.remove(card.getImdbId());
+    }
+    searchIndex.index(cards);
+    genreIndex.index(cards);
+    if (!missing.isEmpty()) {
+      searchIndex.remove(missing);
+      genreIndex.remove(missing);
+    }
+  }
+}
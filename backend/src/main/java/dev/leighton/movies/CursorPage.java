@@ -0,0 +1,21 @@
+package dev.leighton.movies;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of a keyset-paginated listing.
+ * nextCursor is an opaque token to pass back as the cursor parameter,
+ * or null when there are no more items.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPage<T> {
+
+  private List<T> items;
+
+  private String nextCursor;
+}
@@ -1,23 +1,79 @@
 package dev.leighton.movies;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService
+  implements UserDetailsService, UserDetailsPasswordService, MeterBinder {
 
   @Autowired
   private UserRepository userRepository;
 
+  @Autowired
+  private UsernameFilter usernameFilter;
+
+  @Autowired
+  private InvalidationBus invalidationBus;
+
+  // Users by username, so logins and /api/auth/user don't query Mongo every time
+  private final AsyncCache<String, User> users;
+
+  public CustomUserDetailsService(
+    @Value("${movies.auth.user-cache.max-size:10000}") long maxSize,
+    @Value("${movies.auth.user-cache.ttl:5m}") Duration ttl
+  ) {
+    this.users = Caffeine.newBuilder()
+      .maximumSize(maxSize)
+      .expireAfterWrite(ttl)
+      .recordStats()
+      .buildAsync();
+  }
+
+  public User findUser(String username) {
+    // Unknown usernames are not cached, so a later registration is seen immediately
+    return CacheLoads.get(users, username, userRepository::findByUsername);
+  }
+
+  public void evict(String username) {
+    users.synchronous().invalidate(username);
+  }
+
+  // Called after a write to the user; evicts here and tells the other instances
+  public void userChanged(String username) {
+    evict(username);
+    invalidationBus.publish(InvalidationEvent.Type.USER, username);
+  }
+
   @Override
   public UserDetails loadUserByUsername(String username)
     throws UsernameNotFoundException {
-    // Attempt to find the user in the database by username
-    User user = userRepository.findByUsername(username);
+    // Names that were never registered are turned away without a database query.
+    // Spring Security still runs a dummy password check for them, to keep timing even.
+    if (!usernameFilter.mightContain(username)) {
+      throw new UsernameNotFoundException(
+        "User not found with username: " + username
+      );
+    }
+
+    // Attempt to find the user (cached or from the database) by username
+    User user = findUser(username);
 
     // If user is not found, throw an exception that will be handled by Spring Security
     if (user == null) {
@@ -26,11 +82,45 @@ public class CustomUserDetailsService implements UserDetailsService {
       );
     }
 
-    // Convert our application's User entity to Spring Security's UserDetails object
+    // Convert our application's User entity to Spring Security's UserDetails object.
+    // A new object every time: Spring Security erases its password after authentication.
     return new org.springframework.security.core.userdetails.User(
       user.getUsername(),
       user.getPassword(),
       new ArrayList<>()
     );
   }
+
+  @Override
+  public UserDetails updatePassword(UserDetails details, String newPassword) {
+    // Called after a successful login when the stored BCrypt cost differs from the configured one
+    User user = userRepository.findByUsername(details.getUsername());
+    if (user != null) {
+      user.setPassword(newPassword);
+      userRepository.save(user);
+      userChanged(user.getUsername());
+    }
+    return org.springframework.security.core.userdetails.User.withUserDetails(
+      details
+    )
+      .password(newPassword)
+      .build();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, users, "users");
+  }
+
+  public Map<String, Object> stats() {
+    Cache<String, User> cache = users.synchronous();
+    CacheStats stats = cache.stats();
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("size", cache.estimatedSize());
+    result.put("hits", stats.hitCount());
+    result.put("misses", stats.missCount());
+    result.put("hitRate", stats.hitRate());
+    result.put("evictions", stats.evictionCount());
+    return result;
+  }
 }
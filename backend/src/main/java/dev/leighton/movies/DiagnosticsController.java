@@ -0,0 +1,31 @@
+package dev.leighton.movies;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Dumps the most recent sampled request traces on demand.
+ */
+@RestController
+@RequestMapping("/api/v1/diagnostics")
+public class DiagnosticsController {
+
+  @Autowired
+  private RequestDiagnostics diagnostics;
+
+  @GetMapping("/traces")
+  public ResponseEntity<Map<String, Object>> getTraces(
+    @RequestParam(defaultValue = "100") int limit
+  ) {
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("dropped", diagnostics.droppedCount());
+    response.put("traces", diagnostics.recent(limit));
+    return ResponseEntity.ok(response);
+  }
+}
@@ -0,0 +1,69 @@
+package dev.leighton.movies;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for request diagnostics, bound from movies.diagnostics.* properties.
+ * Route sample rates are keyed by URI prefix, for example
+ * movies.diagnostics.routes[/api/v1/movies]=0.1, and the longest matching prefix wins.
+ */
+@Component
+@ConfigurationProperties(prefix = "movies.diagnostics")
+public class DiagnosticsProperties {
+
+  private boolean enabled = true;
+
+  // Fraction of requests traced when no route prefix matches (0.0 - 1.0)
+  private double defaultSampleRate = 0.01;
+
+  private Map<String, Double> routes = new LinkedHashMap<>();
+
+  // Number of traces kept in memory, rounded up to a power of two
+  private int bufferSize = 1024;
+
+  private Duration drainInterval = Duration.ofSeconds(1);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public double getDefaultSampleRate() {
+    return defaultSampleRate;
+  }
+
+  public void setDefaultSampleRate(double defaultSampleRate) {
+    this.defaultSampleRate = defaultSampleRate;
+  }
+
+  public Map<String, Double> getRoutes() {
+    return routes;
+  }
+
+  public void setRoutes(Map<String, Double> routes) {
+    this.routes = routes;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  public Duration getDrainInterval() {
+    return drainInterval;
+  }
+
+  public void setDrainInterval(Duration drainInterval) {
+    this.drainInterval = drainInterval;
+  }
+}
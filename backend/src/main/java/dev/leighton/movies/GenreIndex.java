@@ -0,0 +1,337 @@
+package dev.leighton.movies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bitmap index of movies by genre for filtering and facet counts.
+ * Every movie gets a dense ordinal, and each genre holds a BitSet of the ordinals
+ * tagged with it, so AND/OR filters and per-genre counts are word-at-a-time
+ * bit operations instead of scans. Writes copy the affected bitmaps and publish
+ * a new state, so readers never see a bitmap being modified.
+ */
+@Component
+public class GenreIndex {
+
+  private static final Comparator<MovieCard> BY_ID = Comparator.comparing(
+    MovieCard::getId,
+    Comparator.nullsFirst(Comparator.naturalOrder())
+  );
+
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  private volatile State state = new State(
+    new HashMap<>(),
+    new HashMap<>(),
+    new MovieCard[0],
+    new HashMap<>(),
+    new BitSet(),
+    true,
+    null
+  );
+
+  public void rebuild(List<MovieCard> cards) {
+    Map<String, BitSet> bitmaps = new HashMap<>();
+    Map<String, String> names = new HashMap<>();
+    Map<String, Integer> ordinals = new HashMap<>();
+    MovieCard[] byOrdinal = new MovieCard[cards.size()];
+    BitSet live = new BitSet(cards.size());
+    // Cards normally arrive sorted by _id, which lets facets stop at the first page
+    boolean ordered = true;
+    ObjectId lastId = null;
+
+    for (int ordinal = 0; ordinal < cards.size(); ordinal++) {
+      MovieCard card = cards.get(ordinal);
+      ordered = ordered && follows(card.getId(), lastId);
+      lastId = card.getId();
+      byOrdinal[ordinal] = card;
+      ordinals.put(card.getImdbId(), ordinal);
+      live.set(ordinal);
+      for (String genre : genresOf(card)) {
+        String key = key(genre);
+        names.putIfAbsent(key, genre);
+        bitmaps.computeIfAbsent(key, k -> new BitSet(cards.size())).set(ordinal);
+      }
+    }
+
+    writeLock.lock();
+    try {
+      state = new State(bitmaps, names, byOrdinal, ordinals, live, ordered, lastId);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  // Adds or re-indexes the given movies, copying each affected bitmap once
+  public void index(List<MovieCard> cards) {
+    writeLock.lock();
+    try {
+      State current = state;
+      Map<String, BitSet> bitmaps = new HashMap<>(current.bitmaps());
+      Map<String, String> names = new HashMap<>(current.names());
+      Map<String, Integer> ordinals = new HashMap<>(current.ordinals());
+      BitSet live = (BitSet) current.live().clone();
+      // One slot for every card, new or not, so the array is copied once
+      MovieCard[] byOrdinal = Arrays.copyOf(current.cards(), current.cards().length + cards.size());
+      int size = current.cards().length;
+      // Bitmaps already copied for this update, so the rest can change them in place
+      Set<String> copied = new HashSet<>();
+      boolean ordered = current.ordered();
+      ObjectId lastId = current.lastId();
+
+      for (MovieCard card : cards) {
+        if (card.getImdbId() == null) {
+          continue;
+        }
+        Integer existing = ordinals.get(card.getImdbId());
+        int ordinal;
+        if (existing != null) {
+          // Re-indexing a known movie: clear its old genre bits first
+          ordinal = existing;
+          clear(bitmaps, copied, ordinal);
+          ordered = ordered && Objects.equals(byOrdinal[ordinal].getId(), card.getId());
+        } else {
+          ordinal = size++;
+          ordinals.put(card.getImdbId(), ordinal);
+          // New documents usually have the newest _id, which keeps ordinals in _id order
+          ordered = ordered && follows(card.getId(), lastId);
+          lastId = card.getId();
+        }
+        byOrdinal[ordinal] = card;
+        live.set(ordinal);
+
+        for (String genre : genresOf(card)) {
+          String key = key(genre);
+          names.putIfAbsent(key, genre);
+          writable(bitmaps, copied, key).set(ordinal);
+        }
+      }
+
+      state = new State(
+        bitmaps,
+        names,
+        Arrays.copyOf(byOrdinal, size),
+        ordinals,
+        live,
+        ordered,
+        lastId
+      );
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  // Drops movies that no longer exist; their ordinals are left empty
+  public void remove(Collection<String> imdbIds) {
+    writeLock.lock();
+    try {
+      State current = state;
+      Map<String, BitSet> bitmaps = new HashMap<>(current.bitmaps());
+      Map<String, Integer> ordinals = new HashMap<>(current.ordinals());
+      BitSet live = (BitSet) current.live().clone();
+      MovieCard[] byOrdinal = current.cards().clone();
+      Set<String> copied = new HashSet<>();
+      for (String imdbId : imdbIds) {
+        Integer ordinal = ordinals.remove(imdbId);
+        if (ordinal != null) {
+          clear(bitmaps, copied, ordinal);
+          live.clear(ordinal);
+          byOrdinal[ordinal] = null;
+        }
+      }
+      state = new State(
+        bitmaps,
+        current.names(),
+        byOrdinal,
+        ordinals,
+        live,
+        current.ordered(),
+        current.lastId()
+      );
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  // The indexed card for a movie, or null if it isn't indexed
+  public MovieCard find(String imdbId) {
+    State current = state;
+    Integer ordinal = current.ordinals().get(imdbId);
+    return ordinal == null ? null : current.cards()[ordinal];
+  }
+
+  // One page of matches in _id order, continuing strictly after the given _id (null
+  // for the first page), like the keyset-paginated /page listing
+  public GenreFacets facets(List<String> genres, boolean matchAll, ObjectId after, int limit) {
+    State current = state;
+
+    // Combine the requested genres; no genres means every movie
+    List<String> keys = new ArrayList<>();
+    if (genres != null) {
+      for (String genre : genres) {
+        String key = key(genre);
+        if (key != null) {
+          keys.add(key);
+        }
+      }
+    }
+    BitSet filter;
+    if (keys.isEmpty()) {
+      filter = (BitSet) current.live().clone();
+    } else {
+      filter = null;
+      for (String key : keys) {
+        BitSet bits = current.bitmaps().getOrDefault(key, new BitSet());
+        if (filter == null) {
+          filter = (BitSet) bits.clone();
+        } else if (matchAll) {
+          filter.and(bits);
+        } else {
+          filter.or(bits);
+        }
+      }
+    }
+
+    // Per-genre counts within the filtered set, largest first, then by name
+    List<Map.Entry<String, Integer>> found = new ArrayList<>();
+    BitSet scratch = new BitSet();
+    for (Map.Entry<String, BitSet> entry : current.bitmaps().entrySet()) {
+      scratch.clear();
+      scratch.or(entry.getValue());
+      scratch.and(filter);
+      int count = scratch.cardinality();
+      if (count > 0) {
+        found.add(Map.entry(current.names().get(entry.getKey()), count));
+      }
+    }
+    found.sort(
+      Map.Entry.<String, Integer>comparingByValue().reversed()
+        .thenComparing(Map.Entry.comparingByKey())
+    );
+    Map<String, Integer> counts = new LinkedHashMap<>();
+    for (Map.Entry<String, Integer> entry : found) {
+      counts.put(entry.getKey(), entry.getValue());
+    }
+
+    // Collect limit + 1 matches after the cursor; the extra one tells us another page exists
+    List<MovieCard> movies;
+    if (current.ordered()) {
+      // Ordinals are in _id order, so the first matches are the page
+      movies = new ArrayList<>(limit + 1);
+      for (int ordinal = filter.nextSetBit(0); ordinal >= 0 && movies.size() <= limit; ordinal = filter.nextSetBit(ordinal + 1)) {
+        MovieCard card = current.cards()[ordinal];
+        if (after == null || card.getId().compareTo(after) > 0) {
+          movies.add(card);
+        }
+      }
+    } else {
+      // Otherwise keep the smallest _ids in a max-heap over every match
+      PriorityQueue<MovieCard> page = new PriorityQueue<>(BY_ID.reversed());
+      for (int ordinal = filter.nextSetBit(0); ordinal >= 0; ordinal = filter.nextSetBit(ordinal + 1)) {
+        MovieCard card = current.cards()[ordinal];
+        if (after != null && (card.getId() == null || card.getId().compareTo(after) <= 0)) {
+          continue;
+        }
+        page.add(card);
+        if (page.size() > limit + 1) {
+          page.poll();
+        }
+      }
+      movies = new ArrayList<>(page);
+      movies.sort(BY_ID);
+    }
+    String nextCursor = null;
+    if (movies.size() > limit) {
+      movies = movies.subList(0, limit);
+      nextCursor = limit == 0 ? null : PageCursor.encode(movies.get(limit - 1).getId());
+    }
+
+    return new GenreFacets(filter.cardinality(), counts, movies, nextCursor);
+  }
+
+  // Whether a card with this _id can take the next ordinal and keep them in _id order
+  private static boolean follows(ObjectId id, ObjectId lastId) {
+    return id != null && (lastId == null || id.compareTo(lastId) > 0);
+  }
+
+  // Clears an ordinal from every bitmap that has it
+  private static void clear(Map<String, BitSet> bitmaps, Set<String> copied, int ordinal) {
+    for (Map.Entry<String, BitSet> entry : bitmaps.entrySet()) {
+      if (entry.getValue().get(ordinal)) {
+        writable(bitmaps, copied, entry.getKey()).clear(ordinal);
+      }
+    }
+  }
+
+  // The bitmap for a genre, copied the first time an update touches it, since the
+  // published one may be in use by readers
+  private static BitSet writable(Map<String, BitSet> bitmaps, Set<String> copied, String key) {
+    BitSet bits = bitmaps.get(key);
+    if (copied.add(key)) {
+      bits = bits == null ? new BitSet() : (BitSet) bits.clone();
+      bitmaps.put(key, bits);
+    }
+    return bits;
+  }
+
+  // The card's genres, skipping null and blank entries left by imports
+  private static List<String> genresOf(MovieCard card) {
+    if (card.getGenres() == null) {
+      return List.of();
+    }
+    List<String> genres = new ArrayList<>(card.getGenres().size());
+    for (String genre : card.getGenres()) {
+      if (key(genre) != null) {
+        genres.add(genre);
+      }
+    }
+    return genres;
+  }
+
+  // Case-insensitive lookup key, or null for a missing or blank genre
+  private static String key(String genre) {
+    if (genre == null || genre.isBlank()) {
+      return null;
+    }
+    return genre.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Result of a genre query: matching movie count, per-genre counts within the
+   * matches (largest first), one page of matching movies in _id order, and the
+   * cursor for the next page or null on the last one.
+   */
+  public record GenreFacets(
+    int total,
+    Map<String, Integer> counts,
+    List<MovieCard> movies,
+    String nextCursor
+  ) {}
+
+  // Immutable once published; writers build a new one. ordered is true while
+  // ordinals follow _id order, and lastId is the _id of the highest ordinal.
+  private record State(
+    Map<String, BitSet> bitmaps,
+    Map<String, String> names,
+    MovieCard[] cards,
+    Map<String, Integer> ordinals,
+    BitSet live,
+    boolean ordered,
+    ObjectId lastId
+  ) {}
+}
@@ -0,0 +1,177 @@
+package dev.leighton.movies;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells other instances which of their cached movies, users and sessions are stale.
+ * Writers evict their own caches directly and then publish here. Events wait in a
+ * set for one batching window, so a burst of writes to the same movie goes out as
+ * one event, and everything collected in a window goes out as one batch.
+ * Batches from other instances are handed to the handlers registered per event type;
+ * this instance's own batches are skipped, since it has already evicted.
+ */
+@Component
+public class InvalidationBus {
+
+  private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+  @Autowired
+  private InvalidationTransport transport;
+
+  // How long events are collected before they are sent
+  @Value("${movies.invalidation.batch-window:50ms}")
+  private Duration batchWindow;
+
+  // A window holding this many events is sent early
+  @Value("${movies.invalidation.max-batch-size:500}")
+  private int maxBatchSize;
+
+  // Identifies this instance's batches on a shared transport
+  private final String nodeId = UUID.randomUUID().toString();
+
+  private final Set<InvalidationEvent> pending = ConcurrentHashMap.newKeySet();
+
+  private final Map<InvalidationEvent.Type, List<Consumer<String>>> handlers =
+    new EnumMap<>(InvalidationEvent.Type.class);
+
+  private final AtomicLong published = new AtomicLong();
+
+  private final AtomicLong batchesSent = new AtomicLong();
+
+  private final AtomicLong received = new AtomicLong();
+
+  private ScheduledExecutorService scheduler;
+
+  public InvalidationBus() {
+    for (InvalidationEvent.Type type : InvalidationEvent.Type.values()) {
+      handlers.put(type, new CopyOnWriteArrayList<>());
+    }
+  }
+
+  @PostConstruct
+  void start() {
+    transport.subscribe(this::deliver);
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "invalidation-bus");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(
+      this::flushQuietly,
+      batchWindow.toMillis(),
+      batchWindow.toMillis(),
+      TimeUnit.MILLISECONDS
+    );
+  }
+
+  @PreDestroy
+  void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    // Whatever is still pending goes out before the transport closes
+    flushQuietly();
+  }
+
+  // Runs handler with the key of every event of this type sent by another instance
+  public void subscribe(InvalidationEvent.Type type, Consumer<String> handler) {
+    handlers.get(type).add(handler);
+  }
+
+  public void publish(InvalidationEvent.Type type, String key) {
+    if (key == null) {
+      return;
+    }
+    if (pending.add(new InvalidationEvent(type, key))) {
+      published.incrementAndGet();
+      if (pending.size() >= maxBatchSize) {
+        scheduler.execute(this::flushQuietly);
+      }
+    }
+  }
+
+  // Sends everything pending now, in batches of at most maxBatchSize events
+  public void flush() {
+    List<InvalidationEvent> batch = new ArrayList<>();
+    Iterator<InvalidationEvent> iterator = pending.iterator();
+    while (iterator.hasNext()) {
+      // Removing while iterating means an event added meanwhile is either sent now or next time
+      batch.add(iterator.next());
+      iterator.remove();
+      if (batch.size() == maxBatchSize) {
+        send(batch);
+        batch = new ArrayList<>();
+      }
+    }
+    if (!batch.isEmpty()) {
+      send(batch);
+    }
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("transport", transport.getClass().getSimpleName());
+    stats.put("nodeId", nodeId);
+    stats.put("pending", pending.size());
+    stats.put("published", published.get());
+    stats.put("batchesSent", batchesSent.get());
+    stats.put("received", received.get());
+    return stats;
+  }
+
+  private void send(List<InvalidationEvent> events) {
+    transport.publish(new InvalidationTransport.Batch(nodeId, List.copyOf(events)));
+    batchesSent.incrementAndGet();
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      // The events are gone; other instances fall back on their cache TTLs
+      log.warn("Publishing cache invalidations failed", e);
+    }
+  }
+
+  private void deliver(InvalidationTransport.Batch batch) {
+    if (nodeId.equals(batch.origin())) {
+      return;
+    }
+    for (InvalidationEvent event : batch.events()) {
+      received.incrementAndGet();
+      for (Consumer<String> handler : handlers.get(event.type())) {
+        try {
+          handler.accept(event.key());
+        } catch (RuntimeException e) {
+          log.warn("Handling invalidation {} failed", event, e);
+        }
+      }
+    }
+  }
+}
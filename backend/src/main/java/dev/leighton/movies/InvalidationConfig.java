@@ -0,0 +1,38 @@
+package dev.leighton.movies;
+
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/**
+ * Picks the transport InvalidationBus sends its batches over, from
+ * movies.invalidation.transport: "mongo" for several instances sharing a database,
+ * "loopback" (the default) for a single instance or tests.
+ */
+@Configuration
+public class InvalidationConfig {
+
+  @Bean(initMethod = "start", destroyMethod = "stop")
+  @ConditionalOnProperty(name = "movies.invalidation.transport", havingValue = "mongo")
+  public MongoInvalidationTransport mongoInvalidationTransport(
+    MongoTemplate mongoTemplate,
+    @Value("${movies.invalidation.mongo.collection:invalidations}") String collection,
+    @Value("${movies.invalidation.mongo.size-bytes:1048576}") long sizeBytes,
+    @Value("${movies.invalidation.mongo.poll-interval:1s}") Duration pollInterval
+  ) {
+    return new MongoInvalidationTransport(mongoTemplate, collection, sizeBytes, pollInterval);
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(
+    name = "movies.invalidation.transport",
+    havingValue = "loopback",
+    matchIfMissing = true
+  )
+  public LoopbackInvalidationTransport loopbackInvalidationTransport() {
+    return new LoopbackInvalidationTransport();
+  }
+}
@@ -0,0 +1,22 @@
+package dev.leighton.movies;
+
+/**
+ * Something another instance should drop from its local caches.
+ * Events are compared by value, so repeats of the same key collapse into one
+ * while a batch is being collected.
+ */
+public record InvalidationEvent(Type type, String key) {
+  // Key of events that cover everything of their type
+  public static final String ALL = "*";
+
+  public enum Type {
+    // A movie or its reviews changed; key is the imdbId
+    MOVIE,
+    // A user was registered or changed; key is the username
+    USER,
+    // A shared session was removed or changed; key is the session ID
+    SESSION,
+    // Many movies changed at once (a bulk import); key is ALL
+    CATALOG,
+  }
+}
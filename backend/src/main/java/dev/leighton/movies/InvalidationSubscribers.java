@@ -0,0 +1,55 @@
+package dev.leighton.movies;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts this instance's cached copies when another instance reports a write.
+ * Handlers only evict locally and never publish, so events don't bounce around.
+ */
+@Component
+public class InvalidationSubscribers {
+
+  @Autowired
+  private InvalidationBus bus;
+
+  @Autowired
+  private MovieService movieService;
+
+  @Autowired
+  private CatalogIndexer catalogIndexer;
+
+  @Autowired
+  private CustomUserDetailsService userDetailsService;
+
+  @Autowired
+  private UsernameFilter usernameFilter;
+
+  // Only present with movies.session.store=mongo
+  @Autowired
+  private ObjectProvider<MongoSessionRepository> sessionRepository;
+
+  @PostConstruct
+  void register() {
+    // Cached movie, rendered snapshots in every format
+    bus.subscribe(InvalidationEvent.Type.MOVIE, movieService::evict);
+
+    // Another instance imported movies: pick them up in the search and genre indexes
+    bus.subscribe(InvalidationEvent.Type.CATALOG, all -> {
+      movieService.evictAll();
+      catalogIndexer.rebuild();
+    });
+
+    bus.subscribe(InvalidationEvent.Type.USER, username -> {
+      userDetailsService.evict(username);
+      // A user registered elsewhere can log in here straight away, without waiting for a refresh
+      usernameFilter.add(username);
+    });
+
+    sessionRepository.ifAvailable(repository ->
+      bus.subscribe(InvalidationEvent.Type.SESSION, repository::evict)
+    );
+  }
+}
@@ -0,0 +1,21 @@
+package dev.leighton.movies;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries batches of invalidation events between instances. Every published batch
+ * is delivered to every instance's subscriber, including the publisher's own;
+ * InvalidationBus drops its own batches by origin.
+ */
+public interface InvalidationTransport {
+  void publish(Batch batch);
+
+  // Called at most once, before any batch is published
+  void subscribe(Consumer<Batch> subscriber);
+
+  /**
+   * Events collected on one instance during one batching window.
+   */
+  record Batch(String origin, List<InvalidationEvent> events) {}
+}
@@ -0,0 +1,48 @@
+package dev.leighton.movies;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process transport: batches go straight to every subscriber of the same hub.
+ * With one application per JVM this is a single node and nothing reaches another
+ * instance. Several application contexts in one JVM (as in tests or a local
+ * multi-node harness) share the default hub and see each other's events.
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+  private static final List<Consumer<Batch>> SHARED_HUB = new CopyOnWriteArrayList<>();
+
+  private final List<Consumer<Batch>> hub;
+
+  private Consumer<Batch> subscriber;
+
+  public LoopbackInvalidationTransport() {
+    this(SHARED_HUB);
+  }
+
+  public LoopbackInvalidationTransport(List<Consumer<Batch>> hub) {
+    this.hub = hub;
+  }
+
+  @Override
+  public void publish(Batch batch) {
+    for (Consumer<Batch> consumer : hub) {
+      consumer.accept(batch);
+    }
+  }
+
+  @Override
+  public void subscribe(Consumer<Batch> subscriber) {
+    this.subscriber = subscriber;
+    hub.add(subscriber);
+  }
+
+  // Leaves the hub, so a closed context stops receiving batches
+  public void close() {
+    if (subscriber != null) {
+      hub.remove(subscriber);
+    }
+  }
+}
@@ -0,0 +1,263 @@
+package dev.leighton.movies;
+
+import com.mongodb.CursorType;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/**
+ * Shares invalidation batches through a capped MongoDB collection. Every instance
+ * inserts its batches and follows the collection with a tailable cursor, so a batch
+ * reaches the others within the cursor's await time. A capped collection works on
+ * standalone servers too, unlike change streams, and old batches fall off by
+ * themselves once it is full.
+ *
+ * When the cursor dies (an empty collection, a failover) the tailer reopens it from
+ * the last batch it saw, going back a few seconds to cover clock skew between
+ * instances; the IDs of recent batches are remembered so those aren't delivered
+ * twice. A server that can't tail at all is polled instead; the plain collection it
+ * polls gets a TTL index on createdAt, so batches expire once every instance has had
+ * the overlap plus a poll interval to read them.
+ */
+public class MongoInvalidationTransport implements InvalidationTransport {
+
+  private static final Logger log = LoggerFactory.getLogger(MongoInvalidationTransport.class);
+
+  // Re-read this much before the last batch seen when reopening the cursor
+  private static final Duration RESUME_OVERLAP = Duration.ofSeconds(5);
+
+  // Batches remembered as delivered, so re-reading the overlap doesn't deliver them twice
+  private static final int RECENT_IDS = 1024;
+
+  private static final String ORIGIN = "origin";
+
+  private static final String EVENTS = "events";
+
+  private static final String CREATED_AT = "createdAt";
+
+  private final MongoTemplate mongoTemplate;
+
+  private final String collectionName;
+
+  private final long sizeBytes;
+
+  private final Duration pollInterval;
+
+  private volatile Consumer<Batch> subscriber;
+
+  private volatile boolean running;
+
+  private volatile boolean tailable = true;
+
+  private Thread tailer;
+
+  // Only touched by the tailer thread
+  private final Set<ObjectId> recentIds = Collections.newSetFromMap(
+    new LinkedHashMap<>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ObjectId, Boolean> eldest) {
+        return size() > RECENT_IDS;
+      }
+    }
+  );
+
+  public MongoInvalidationTransport(
+    MongoTemplate mongoTemplate,
+    String collectionName,
+    long sizeBytes,
+    Duration pollInterval
+  ) {
+    this.mongoTemplate = mongoTemplate;
+    this.collectionName = collectionName;
+    this.sizeBytes = sizeBytes;
+    this.pollInterval = pollInterval;
+  }
+
+  public void start() {
+    createCollection();
+    running = true;
+    tailer = new Thread(this::tail, "invalidation-tailer");
+    tailer.setDaemon(true);
+    tailer.start();
+  }
+
+  public void stop() {
+    running = false;
+    if (tailer != null) {
+      tailer.interrupt();
+    }
+  }
+
+  @Override
+  public void publish(Batch batch) {
+    List<Document> events = new ArrayList<>(batch.events().size());
+    for (InvalidationEvent event : batch.events()) {
+      events.add(new Document("type", event.type().name()).append("key", event.key()));
+    }
+    collection().insertOne(
+      new Document("_id", new ObjectId())
+        .append(ORIGIN, batch.origin())
+        .append(EVENTS, events)
+        .append(CREATED_AT, new Date())
+    );
+  }
+
+  @Override
+  public void subscribe(Consumer<Batch> subscriber) {
+    this.subscriber = subscriber;
+  }
+
+  private void createCollection() {
+    if (mongoTemplate.collectionExists(collectionName)) {
+      return;
+    }
+    try {
+      mongoTemplate
+        .getDb()
+        .createCollection(
+          collectionName,
+          new CreateCollectionOptions().capped(true).sizeInBytes(sizeBytes)
+        );
+    } catch (MongoCommandException e) {
+      if (mongoTemplate.collectionExists(collectionName)) {
+        // Another instance created it first
+        return;
+      }
+      // Servers without capped collections (such as test stand-ins) get a plain one, polled
+      log.warn(
+        "Could not create capped collection {}, polling a plain one instead: {}",
+        collectionName,
+        e.getMessage()
+      );
+      poll();
+    }
+  }
+
+  // Switches to polling, which reads a plain collection that needs old batches expired
+  private void poll() {
+    tailable = false;
+    // The TTL monitor runs about once a minute, so batches usually live a bit longer
+    long seconds = RESUME_OVERLAP.plus(pollInterval).toSeconds() + 1;
+    try {
+      collection().createIndex(
+        Indexes.ascending(CREATED_AT),
+        new IndexOptions().name("createdAt_ttl").expireAfter(seconds, TimeUnit.SECONDS)
+      );
+    } catch (MongoException e) {
+      log.warn(
+        "Could not add a TTL index to {}, old batches will not expire: {}",
+        collectionName,
+        e.getMessage()
+      );
+    }
+  }
+
+  private void tail() {
+    // Only batches published after startup matter; older ones predate our caches
+    ObjectId lastSeen = new ObjectId();
+    while (running) {
+      ObjectId from = new ObjectId(
+        Date.from(lastSeen.getDate().toInstant().minus(RESUME_OVERLAP))
+      );
+      try (MongoCursor<Document> cursor = open(from)) {
+        while (running) {
+          Document document = tailable
+            ? cursor.tryNext()
+            : (cursor.hasNext() ? cursor.next() : null);
+          if (document == null) {
+            if (!tailable || cursor.getServerCursor() == null) {
+              // Polling, or the tailable cursor is dead; reopen it after a pause
+              break;
+            }
+            continue;
+          }
+          ObjectId id = document.getObjectId("_id");
+          if (!recentIds.add(id)) {
+            continue;
+          }
+          if (id.compareTo(lastSeen) > 0) {
+            lastSeen = id;
+          }
+          deliver(document);
+        }
+      } catch (MongoCommandException e) {
+        if (tailable) {
+          log.warn("Tailing {} failed, polling it instead: {}", collectionName, e.getMessage());
+          poll();
+          continue;
+        }
+        log.warn("Reading invalidations from {} failed", collectionName, e);
+      } catch (MongoException e) {
+        if (!running) {
+          return;
+        }
+        log.warn("Reading invalidations from {} failed", collectionName, e);
+      }
+      try {
+        TimeUnit.MILLISECONDS.sleep(pollInterval.toMillis());
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private MongoCursor<Document> open(ObjectId from) {
+    if (tailable) {
+      // Tailable cursors follow insertion order and can't be sorted
+      return collection()
+        .find(Filters.gt("_id", from))
+        .cursorType(CursorType.TailableAwait)
+        .maxAwaitTime(1, TimeUnit.SECONDS)
+        .iterator();
+    }
+    return collection().find(Filters.gt("_id", from)).sort(Sorts.ascending("_id")).iterator();
+  }
+
+  private void deliver(Document document) {
+    Consumer<Batch> target = subscriber;
+    List<Document> events = document.getList(EVENTS, Document.class);
+    if (target == null || events == null) {
+      return;
+    }
+    List<InvalidationEvent> parsed = new ArrayList<>(events.size());
+    for (Document event : events) {
+      try {
+        parsed.add(
+          new InvalidationEvent(
+            InvalidationEvent.Type.valueOf(event.getString("type")),
+            event.getString("key")
+          )
+        );
+      } catch (IllegalArgumentException | NullPointerException e) {
+        // Written by a newer version with a type this one doesn't know
+        log.debug("Skipping unknown invalidation {}", event);
+      }
+    }
+    target.accept(new Batch(document.getString(ORIGIN), parsed));
+  }
+
+  private MongoCollection<Document> collection() {
+    return mongoTemplate.getCollection(collectionName);
+  }
+}
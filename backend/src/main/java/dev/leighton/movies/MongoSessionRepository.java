@@ -0,0 +1,397 @@
+package dev.leighton.movies;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.events.SessionCreatedEvent;
+import org.springframework.session.events.SessionDeletedEvent;
+import org.springframework.session.events.SessionExpiredEvent;
+
+/**
+ * Stores HTTP sessions in a MongoDB collection so every instance sees the same logins.
+ * A TTL index on expireAt lets Mongo remove expired sessions by itself.
+ * Recently used sessions are kept in a small per-node near cache, so most requests
+ * don't read Mongo at all. Saves only $set/$unset the attributes that changed, and
+ * lastAccessedTime is written at most once per touch interval unless something else
+ * changed as well.
+ */
+public class MongoSessionRepository
+  implements SessionRepository<MongoSessionRepository.MongoSession> {
+
+  private static final String CREATED = "created";
+
+  private static final String LAST_ACCESSED = "lastAccessed";
+
+  private static final String MAX_INACTIVE = "maxInactiveSeconds";
+
+  private static final String EXPIRE_AT = "expireAt";
+
+  private static final String ATTRIBUTES = "attrs";
+
+  private final MongoTemplate mongoTemplate;
+
+  private final String collection;
+
+  private final Duration defaultMaxInactiveInterval;
+
+  private final Duration touchInterval;
+
+  // Session state as it is stored in Mongo, by session ID
+  private final Cache<String, MapSession> nearCache;
+
+  private final SerializingConverter serializer = new SerializingConverter();
+
+  private final DeserializingConverter deserializer = new DeserializingConverter();
+
+  private ApplicationEventPublisher eventPublisher = event -> {};
+
+  // Tells other instances to drop their near-cached copy after a change
+  private InvalidationBus invalidationBus;
+
+  public MongoSessionRepository(
+    MongoTemplate mongoTemplate,
+    String collection,
+    Duration defaultMaxInactiveInterval,
+    Duration touchInterval,
+    long nearCacheSize,
+    Duration nearCacheTtl
+  ) {
+    this.mongoTemplate = mongoTemplate;
+    this.collection = collection;
+    this.defaultMaxInactiveInterval = defaultMaxInactiveInterval;
+    this.touchInterval = touchInterval;
+    // A short TTL bounds how long another node's logout or change can go unnoticed here
+    // if its invalidation is lost
+    this.nearCache = Caffeine.newBuilder()
+      .maximumSize(nearCacheSize)
+      .expireAfterWrite(nearCacheTtl)
+      .build();
+  }
+
+  public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+    this.eventPublisher = eventPublisher;
+  }
+
+  public void setInvalidationBus(InvalidationBus invalidationBus) {
+    this.invalidationBus = invalidationBus;
+  }
+
+  @PostConstruct
+  void createIndexes() {
+    // Mongo's TTL monitor deletes a session once its expireAt has passed
+    mongoTemplate
+      .indexOps(collection)
+      .ensureIndex(
+        new Index().on(EXPIRE_AT, Sort.Direction.ASC).expire(Duration.ZERO)
+      );
+  }
+
+  // Sessions in the store that have not expired yet, across all instances
+  public long countActive() {
+    return mongoTemplate
+      .getCollection(collection)
+      .countDocuments(new Document(EXPIRE_AT, new Document("$gt", new Date())));
+  }
+
+  @Override
+  public MongoSession createSession() {
+    MapSession session = new MapSession();
+    session.setMaxInactiveInterval(defaultMaxInactiveInterval);
+    return new MongoSession(session, null);
+  }
+
+  @Override
+  public MongoSession findById(String id) {
+    MapSession stored = nearCache.getIfPresent(id);
+    if (stored == null) {
+      Document document = mongoTemplate
+        .getCollection(collection)
+        .find(new Document("_id", id))
+        .first();
+      if (document == null) {
+        return null;
+      }
+      stored = toSession(id, document);
+      nearCache.put(id, stored);
+    }
+    if (stored.isExpired()) {
+      remove(id);
+      eventPublisher.publishEvent(new SessionExpiredEvent(this, stored));
+      return null;
+    }
+    // Every request gets its own copy, so concurrent requests never share dirty state
+    return new MongoSession(new MapSession(stored), stored);
+  }
+
+  @Override
+  public void save(MongoSession session) {
+    MapSession current = session.delegate;
+    if (session.stored == null || session.isIdChanged()) {
+      // New session, or a new ID after login (Mongo can't change an _id in place)
+      mongoTemplate.getCollection(collection).insertOne(toDocument(current));
+      if (session.stored != null) {
+        // Same session under a new ID, so no deleted event
+        remove(session.originalId);
+      } else {
+        eventPublisher.publishEvent(new SessionCreatedEvent(this, current));
+      }
+    } else {
+      Update update = session.changes(touchInterval);
+      if (update != null) {
+        mongoTemplate.updateFirst(
+          Query.query(Criteria.where("_id").is(current.getId())),
+          update,
+          collection
+        );
+        // A touch alone doesn't matter to other near caches; changed attributes do
+        if (session.hasChanges()) {
+          notifyOthers(current.getId());
+        }
+      }
+    }
+    session.markSaved(touchInterval);
+    nearCache.put(current.getId(), session.stored);
+  }
+
+  @Override
+  public void deleteById(String id) {
+    MongoSession session = findById(id);
+    remove(id);
+    if (session != null) {
+      eventPublisher.publishEvent(new SessionDeletedEvent(this, session));
+    }
+  }
+
+  private void remove(String id) {
+    evict(id);
+    mongoTemplate.remove(Query.query(Criteria.where("_id").is(id)), collection);
+    notifyOthers(id);
+  }
+
+  private void notifyOthers(String id) {
+    if (invalidationBus != null) {
+      invalidationBus.publish(InvalidationEvent.Type.SESSION, id);
+    }
+  }
+
+  // Drops a session from this node's near cache; the next request reads it from Mongo again
+  public void evict(String id) {
+    nearCache.invalidate(id);
+  }
+
+  private Document toDocument(MapSession session) {
+    Document attributes = new Document();
+    for (String name : session.getAttributeNames()) {
+      attributes.put(encodeKey(name), serialize(session.getAttribute(name)));
+    }
+    return new Document("_id", session.getId())
+      .append(CREATED, Date.from(session.getCreationTime()))
+      .append(LAST_ACCESSED, Date.from(session.getLastAccessedTime()))
+      .append(MAX_INACTIVE, session.getMaxInactiveInterval().toSeconds())
+      .append(EXPIRE_AT, expireAt(session))
+      .append(ATTRIBUTES, attributes);
+  }
+
+  private MapSession toSession(String id, Document document) {
+    MapSession session = new MapSession(id);
+    session.setCreationTime(document.getDate(CREATED).toInstant());
+    session.setLastAccessedTime(document.getDate(LAST_ACCESSED).toInstant());
+    session.setMaxInactiveInterval(
+      Duration.ofSeconds(((Number) document.get(MAX_INACTIVE)).longValue())
+    );
+    Document attributes = document.get(ATTRIBUTES, Document.class);
+    if (attributes != null) {
+      for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+        session.setAttribute(
+          decodeKey(entry.getKey()),
+          deserializer.convert(((Binary) entry.getValue()).getData())
+        );
+      }
+    }
+    return session;
+  }
+
+  private Binary serialize(Object value) {
+    return new Binary(serializer.convert(value));
+  }
+
+  private static Date expireAt(Session session) {
+    return Date.from(
+      session.getLastAccessedTime().plus(session.getMaxInactiveInterval())
+    );
+  }
+
+  // Attribute names become field names, which may not contain '.' or start with '$'
+  private static String encodeKey(String name) {
+    return name.replace("%", "%25").replace(".", "%2E").replace("$", "%24");
+  }
+
+  private static String decodeKey(String key) {
+    return key.replace("%24", "$").replace("%2E", ".").replace("%25", "%");
+  }
+
+  /**
+   * A session for the duration of one request. Remembers which attributes were set
+   * or removed so save() only writes those.
+   */
+  public final class MongoSession implements Session {
+
+    private final MapSession delegate;
+
+    // State as last read from or written to Mongo, null for a new session
+    private MapSession stored;
+
+    private String originalId;
+
+    private final Set<String> changedAttributes = new HashSet<>();
+
+    private boolean maxInactiveChanged;
+
+    MongoSession(MapSession delegate, MapSession stored) {
+      this.delegate = delegate;
+      this.stored = stored;
+      this.originalId = delegate.getId();
+    }
+
+    @Override
+    public String getId() {
+      return delegate.getId();
+    }
+
+    @Override
+    public String changeSessionId() {
+      return delegate.changeSessionId();
+    }
+
+    @Override
+    public <T> T getAttribute(String name) {
+      return delegate.getAttribute(name);
+    }
+
+    @Override
+    public Set<String> getAttributeNames() {
+      return delegate.getAttributeNames();
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+      delegate.setAttribute(name, value);
+      changedAttributes.add(name);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+      delegate.removeAttribute(name);
+      changedAttributes.add(name);
+    }
+
+    @Override
+    public Instant getCreationTime() {
+      return delegate.getCreationTime();
+    }
+
+    @Override
+    public void setLastAccessedTime(Instant lastAccessedTime) {
+      delegate.setLastAccessedTime(lastAccessedTime);
+    }
+
+    @Override
+    public Instant getLastAccessedTime() {
+      return delegate.getLastAccessedTime();
+    }
+
+    @Override
+    public void setMaxInactiveInterval(Duration interval) {
+      if (!interval.equals(delegate.getMaxInactiveInterval())) {
+        maxInactiveChanged = true;
+      }
+      delegate.setMaxInactiveInterval(interval);
+    }
+
+    @Override
+    public Duration getMaxInactiveInterval() {
+      return delegate.getMaxInactiveInterval();
+    }
+
+    @Override
+    public boolean isExpired() {
+      return delegate.isExpired();
+    }
+
+    boolean hasChanges() {
+      return !changedAttributes.isEmpty() || maxInactiveChanged;
+    }
+
+    boolean isIdChanged() {
+      return !originalId.equals(delegate.getId());
+    }
+
+    // The update for everything that changed since the session was read, or null for none
+    Update changes(Duration touchInterval) {
+      Update update = new Update();
+      boolean dirty = false;
+      for (String name : changedAttributes) {
+        String field = ATTRIBUTES + "." + encodeKey(name);
+        Object value = delegate.getAttribute(name);
+        if (value == null) {
+          update.unset(field);
+        } else {
+          update.set(field, serialize(value));
+        }
+        dirty = true;
+      }
+      if (maxInactiveChanged) {
+        update.set(MAX_INACTIVE, delegate.getMaxInactiveInterval().toSeconds());
+        dirty = true;
+      }
+      // Requests touch the session every time; only persist that once per interval
+      Duration sinceTouch = Duration.between(
+        stored.getLastAccessedTime(),
+        delegate.getLastAccessedTime()
+      );
+      if (dirty || sinceTouch.compareTo(touchInterval) >= 0) {
+        update.set(LAST_ACCESSED, Date.from(delegate.getLastAccessedTime()));
+        update.set(EXPIRE_AT, expireAt(delegate));
+        return update;
+      }
+      return null;
+    }
+
+    // Called after save() with the same touch interval, to keep stored in step with Mongo
+    void markSaved(Duration touchInterval) {
+      boolean written =
+        stored == null ||
+        isIdChanged() ||
+        !changedAttributes.isEmpty() ||
+        maxInactiveChanged ||
+        Duration.between(stored.getLastAccessedTime(), delegate.getLastAccessedTime())
+          .compareTo(touchInterval) >= 0;
+      if (written) {
+        stored = new MapSession(delegate);
+      }
+      originalId = delegate.getId();
+      changedAttributes.clear();
+      maxInactiveChanged = false;
+    }
+  }
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.DocumentReference;
 
@@ -18,6 +19,8 @@ public class Movie {
   @Id
   private ObjectId Id;
 
+  // Unique, so concurrent imports or upserts can't create the same movie twice
+  @Indexed(unique = true)
   private String imdbId;
 
   private String title;
@@ -32,9 +35,13 @@ public class Movie {
 
   private List<String> backdrops;
 
+  // All reviews, or only the most recent ones when movies.reviews.embedded-limit is set
   @DocumentReference
   private List<Review> reviewIds;
 
+  // Number of reviews written since this counter was introduced
+  private long reviewCount;
+
   public Movie(
     String imdbId,
     String title,
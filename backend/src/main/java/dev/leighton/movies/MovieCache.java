@@ -0,0 +1,99 @@
+package dev.leighton.movies;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process read-through cache in front of the movie queries.
+ * Single movies are keyed by imdbId and the full catalog is stored as one extra entry.
+ * Both caches are bounded in size, expire after a TTL and use Caffeine's
+ * frequency-based (W-TinyLFU) eviction.
+ */
+@Component
+public class MovieCache implements MeterBinder {
+
+  private static final String CATALOG_KEY = "catalog";
+
+  private final AsyncCache<String, Optional<Movie>> movies;
+
+  private final AsyncCache<String, List<Movie>> catalog;
+
+  public MovieCache(
+    @Value("${movies.cache.max-size:1000}") long maxSize,
+    @Value("${movies.cache.ttl:10m}") Duration ttl
+  ) {
+    this.movies = Caffeine.newBuilder()
+      .maximumSize(maxSize)
+      .expireAfterWrite(ttl)
+      .recordStats()
+      .buildAsync();
+    this.catalog = Caffeine.newBuilder()
+      .maximumSize(1)
+      .expireAfterWrite(ttl)
+      .recordStats()
+      .buildAsync();
+  }
+
+  public Optional<Movie> getMovie(
+    String imdbId,
+    Function<String, Optional<Movie>> loader
+  ) {
+    // Misses for unknown IDs are cached too, as Optional.empty()
+    return CacheLoads.get(movies, imdbId, loader);
+  }
+
+  public List<Movie> getCatalog(Supplier<List<Movie>> loader) {
+    return CacheLoads.get(catalog, CATALOG_KEY, key -> List.copyOf(loader.get()));
+  }
+
+  public void evict(String imdbId) {
+    movies.synchronous().invalidate(imdbId);
+    // The catalog embeds every movie's reviews, so it is stale as well
+    catalog.synchronous().invalidate(CATALOG_KEY);
+  }
+
+  public void evictAll() {
+    movies.synchronous().invalidateAll();
+    catalog.synchronous().invalidateAll();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    // Publishes the same hit/miss/eviction counters as stats() under cache.*
+    CaffeineCacheMetrics.monitor(registry, movies, "movies");
+    CaffeineCacheMetrics.monitor(registry, catalog, "catalog");
+  }
+
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("movies", describe(movies.synchronous()));
+    stats.put("catalog", describe(catalog.synchronous()));
+    return stats;
+  }
+
+  private static Map<String, Object> describe(Cache<?, ?> cache) {
+    CacheStats stats = cache.stats();
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("size", cache.estimatedSize());
+    result.put("hits", stats.hitCount());
+    result.put("misses", stats.missCount());
+    result.put("hitRate", stats.hitRate());
+    result.put("evictions", stats.evictionCount());
+    result.put("loadTimeNanos", stats.totalLoadTime());
+    return result;
+  }
+}
@@ -0,0 +1,45 @@
+package dev.leighton.movies;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+
+/**
+ * Lightweight read-only view of a movie used by listing pages.
+ * It leaves out the reviewIds references and backdrops, so loading a page of
+ * cards never triggers review resolution.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieCard {
+
+  // Fields read from the movies collection when building a card
+  public static final String[] FIELDS = {
+    "_id",
+    "imdbId",
+    "title",
+    "releaseDate",
+    "trailerLink",
+    "poster",
+    "genres",
+  };
+
+  @Id
+  private ObjectId id;
+
+  private String imdbId;
+
+  private String title;
+
+  private String releaseDate;
+
+  private String trailerLink;
+
+  private String poster;
+
+  private List<String> genres;
+}
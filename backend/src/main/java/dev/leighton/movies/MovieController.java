@@ -1,17 +1,31 @@
 package dev.leighton.movies;
 
-import jakarta.servlet.http.Cookie;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1/movies")
@@ -20,84 +34,287 @@ public class MovieController {
   @Autowired
   private MovieService service;
 
+  @Autowired
+  private MovieSnapshots snapshots;
+
+  @Autowired
+  private ReviewService reviewService;
+
+  @Autowired
+  private MovieSearchIndex searchIndex;
+
+  @Autowired
+  private GenreIndex genreIndex;
+
+  @Autowired
+  private ReviewStats reviewStats;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${movies.stream.chunk-size:100}")
+  private int streamChunkSize;
+
   @GetMapping
-  public ResponseEntity<List<Movie>> getMovies(
+  public ResponseEntity<?> getMovies(
     HttpServletRequest request,
     HttpServletResponse response
   ) {
-    // Debug information
-    System.out.println("==== Movie Request ====");
-    System.out.println("Request URI: " + request.getRequestURI());
-    System.out.println("Session ID: " + request.getSession().getId());
-    System.out.println("Is new session: " + request.getSession().isNew());
-
-    // Print all headers
-    System.out.println("Request Headers:");
-    java.util.Enumeration<String> headerNames = request.getHeaderNames();
-    while (headerNames.hasMoreElements()) {
-      String headerName = headerNames.nextElement();
-      System.out.println(headerName + ": " + request.getHeader(headerName));
+    // For troubleshooting, explicitly add the session cookie to every response
+    // (there is no session in the stateless token mode)
+    HttpSession session = request.getSession(false);
+    if (session != null) {
+      response.addHeader(
+        "Set-Cookie",
+        "JSESSIONID=" + session.getId() + "; Path=/; HttpOnly; SameSite=None; Secure"
+      );
     }
 
-    // Print all cookies
-    Cookie[] cookies = request.getCookies();
-    if (cookies != null) {
-      System.out.println("Cookies received:");
-      for (Cookie cookie : cookies) {
-        System.out.println(cookie.getName() + ": " + cookie.getValue());
-      }
-    } else {
-      System.out.println("No cookies received");
+    // Serve the pre-encoded catalog when snapshots are enabled
+    if (snapshots.isEnabled()) {
+      MovieSnapshots.Format format = MovieSnapshots.Format.negotiate(
+        request.getHeader(HttpHeaders.ACCEPT)
+      );
+      return snapshotResponse(snapshots.getCatalog(service, format), request);
     }
 
     // Call the service layer to retrieve all movies from the database
     List<Movie> allMovies = service.findAllMovies();
 
-    // For troubleshooting, explicitly add the session cookie to every response
-    String sessionId = request.getSession().getId();
-    response.addHeader(
-      "Set-Cookie",
-      "JSESSIONID=" + sessionId + "; Path=/; HttpOnly; SameSite=None; Secure"
-    );
-
     // Return the list of movies wrapped in a ResponseEntity with HTTP 200 OK status
     return new ResponseEntity<List<Movie>>(allMovies, HttpStatus.OK);
   }
 
+  @GetMapping("/page")
+  public ResponseEntity<?> getMoviePage(
+    @RequestParam(required = false) String cursor, // Opaque token from the previous page
+    @RequestParam(required = false) Integer size
+  ) {
+    try {
+      // Return one page of lightweight movie cards without resolving reviews
+      CursorPage<MovieCard> page = service.findMovieCards(cursor, size);
+      return ResponseEntity.ok(page);
+    } catch (IllegalArgumentException e) {
+      // Create error response if the cursor could not be decoded
+      Map<String, String> error = new HashMap<>();
+      error.put("error", e.getMessage());
+      return ResponseEntity.badRequest().body(error); // Returns HTTP 400 Bad Request
+    }
+  }
+
+  @GetMapping("/stream")
+  public ResponseEntity<StreamingResponseBody> streamMovies() {
+    // Write movies as newline-delimited JSON while reading them from the cursor.
+    // Writes block while the client is slow to read, which in turn holds back the cursor.
+    StreamingResponseBody body = outputStream -> {
+      JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      try {
+        service.streamAllMovies(streamChunkSize, movies -> {
+          try {
+            for (Movie movie : movies) {
+              objectMapper.writeValue(generator, movie);
+              generator.writeRaw('\n');
+            }
+            // Push each chunk to the client instead of buffering the response
+            generator.flush();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch (UncheckedIOException e) {
+        // Usually the client went away; stop reading from the cursor
+        throw e.getCause();
+      } finally {
+        generator.close();
+      }
+    };
+
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_NDJSON)
+      .body(body);
+  }
+
+  @GetMapping("/search")
+  public ResponseEntity<List<MovieCard>> searchMovies(
+    @RequestParam("q") String query, // Words typed so far; the last one may be partial
+    @RequestParam(defaultValue = "10") int limit
+  ) {
+    // Served entirely from the in-memory title index
+    List<MovieCard> results = searchIndex.search(query, Math.min(limit, 100));
+    return ResponseEntity.ok(results);
+  }
+
+  @GetMapping("/genres")
+  public ResponseEntity<?> getMoviesByGenre(
+    @RequestParam(name = "genre", required = false) List<String> genres,
+    @RequestParam(defaultValue = "all") String match, // "all" (AND) or "any" (OR)
+    @RequestParam(required = false) String cursor, // Opaque token from the previous page
+    @RequestParam(defaultValue = "20") int limit
+  ) {
+    try {
+      boolean matchAll;
+      if ("all".equalsIgnoreCase(match)) {
+        matchAll = true;
+      } else if ("any".equalsIgnoreCase(match)) {
+        matchAll = false;
+      } else {
+        throw new IllegalArgumentException("Invalid match: " + match + " (expected all or any)");
+      }
+      ObjectId after = cursor == null || cursor.isBlank() ? null : PageCursor.decode(cursor);
+
+      // Filtering and facet counts come from the in-memory genre bitmaps
+      GenreIndex.GenreFacets facets = genreIndex.facets(
+        genres,
+        matchAll,
+        after,
+        Math.max(0, Math.min(limit, 100))
+      );
+      return ResponseEntity.ok(facets);
+    } catch (IllegalArgumentException e) {
+      // Create error response for an unknown match mode or a bad cursor
+      Map<String, String> error = new HashMap<>();
+      error.put("error", e.getMessage());
+      return ResponseEntity.badRequest().body(error); // Returns HTTP 400 Bad Request
+    }
+  }
+
+  @GetMapping("/top")
+  public ResponseEntity<?> getTopMovies(
+    @RequestParam(defaultValue = "24h") String window, // "24h", "7d" or "all"
+    @RequestParam(defaultValue = "10") int limit
+  ) {
+    ReviewStats.Window reviewWindow;
+    try {
+      reviewWindow = ReviewStats.Window.fromLabel(window);
+    } catch (IllegalArgumentException e) {
+      // Create error response for an unknown window
+      Map<String, String> error = new HashMap<>();
+      error.put("error", e.getMessage());
+      return ResponseEntity.badRequest().body(error); // Returns HTTP 400 Bad Request
+    }
+
+    // Read from the in-memory leaderboard, with card details from the genre index
+    List<Map<String, Object>> movies = new ArrayList<>();
+    for (ReviewStats.Entry entry : reviewStats.top(
+      reviewWindow,
+      Math.min(limit, reviewStats.getTopSize())
+    )) {
+      Map<String, Object> movie = new LinkedHashMap<>();
+      movie.put("imdbId", entry.imdbId());
+      movie.put("reviews", entry.reviews());
+      movie.put("movie", genreIndex.find(entry.imdbId()));
+      movies.add(movie);
+    }
+
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("window", reviewWindow.getLabel());
+    response.put("movies", movies);
+    return ResponseEntity.ok(response);
+  }
+
   @GetMapping("/{imdbId}")
-  public ResponseEntity<Optional<Movie>> getSingleMovie(
+  public ResponseEntity<?> getSingleMovie(
     @PathVariable String imdbId, // Extract the imdbId value from the URL path
     HttpServletRequest request,
     HttpServletResponse response
   ) {
-    // Debug information
-    System.out.println("==== Single Movie Request ====");
-    System.out.println("Request URI: " + request.getRequestURI());
-    System.out.println("Session ID: " + request.getSession().getId());
-    System.out.println("Is new session: " + request.getSession().isNew());
-
-    // Print all cookies
-    Cookie[] cookies = request.getCookies();
-    if (cookies != null) {
-      System.out.println("Cookies received:");
-      for (Cookie cookie : cookies) {
-        System.out.println(cookie.getName() + ": " + cookie.getValue());
-      }
-    } else {
-      System.out.println("No cookies received");
+    // For troubleshooting, explicitly add the session cookie to every response
+    // (there is no session in the stateless token mode)
+    HttpSession session = request.getSession(false);
+    if (session != null) {
+      response.addHeader(
+        "Set-Cookie",
+        "JSESSIONID=" + session.getId() + "; Path=/; HttpOnly; SameSite=None; Secure"
+      );
+    }
+
+    // Serve the pre-encoded movie when snapshots are enabled
+    if (snapshots.isEnabled()) {
+      MovieSnapshots.Format format = MovieSnapshots.Format.negotiate(
+        request.getHeader(HttpHeaders.ACCEPT)
+      );
+      return snapshotResponse(snapshots.getMovie(imdbId, service, format), request);
     }
 
     // Call the service layer to find a specific movie by its IMDb ID
     Optional<Movie> movie = service.findMovieByImdbId(imdbId);
 
-    // For troubleshooting, explicitly add the session cookie to every response
-    String sessionId = request.getSession().getId();
-    response.addHeader(
-      "Set-Cookie",
-      "JSESSIONID=" + sessionId + "; Path=/; HttpOnly; SameSite=None; Secure"
-    );
-
     // Return the movie wrapped in a ResponseEntity with HTTP 200 OK status
     return new ResponseEntity<Optional<Movie>>(movie, HttpStatus.OK);
   }
+
+  @GetMapping("/{imdbId}/stats")
+  public ResponseEntity<ReviewStats.MovieReviewStats> getMovieReviewStats(
+    @PathVariable String imdbId
+  ) {
+    // Review count, last review time and recent activity, all kept in memory
+    return ResponseEntity.ok(reviewStats.get(imdbId));
+  }
+
+  @GetMapping("/{imdbId}/reviews")
+  public ResponseEntity<?> getMovieReviews(
+    @PathVariable String imdbId,
+    @RequestParam(required = false) String cursor, // Opaque token from the previous page
+    @RequestParam(required = false) Integer size
+  ) {
+    try {
+      // Return one page of the movie's reviews, newest first
+      CursorPage<Review> page = reviewService.findReviews(imdbId, cursor, size);
+      return ResponseEntity.ok(page);
+    } catch (IllegalArgumentException e) {
+      // Create error response if the cursor could not be decoded
+      Map<String, String> error = new HashMap<>();
+      error.put("error", e.getMessage());
+      return ResponseEntity.badRequest().body(error); // Returns HTTP 400 Bad Request
+    }
+  }
+
+  private ResponseEntity<byte[]> snapshotResponse(
+    MovieSnapshots.Snapshot snapshot,
+    HttpServletRequest request
+  ) {
+    // Pick the gzip copy if we have one and the client accepts it
+    String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    boolean useGzip =
+      snapshot.gzipBody() != null &&
+      acceptEncoding != null &&
+      acceptEncoding.contains("gzip");
+    String etag = useGzip ? snapshot.gzipEtag() : snapshot.etag();
+
+    // Return HTTP 304 Not Modified if the client already has this representation
+    if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+        .eTag(etag)
+        .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+        .build();
+    }
+
+    ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+      .eTag(etag)
+      .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+      .contentType(snapshot.format().getMediaType());
+    if (useGzip) {
+      builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+      return builder.body(snapshot.gzipBody());
+    }
+    return builder.body(snapshot.body());
+  }
+
+  private static boolean etagMatches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    // If-None-Match may hold several tags and uses weak comparison, so ignore any W/ prefix
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
 }
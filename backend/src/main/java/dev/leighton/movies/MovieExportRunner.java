@@ -0,0 +1,50 @@
+package dev.leighton.movies;
+
+import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exports the catalog to a file at startup when movies.export.file is set, e.g.
+ * java -jar movies.jar --movies.export.file=/data/movies.ndjson.gz
+ * Progress is checkpointed next to the file (movies.export.checkpoint-file, by
+ * default the file name plus .checkpoint); if a run is cut short, starting it again
+ * with the same file carries on from the last checkpoint. The application exits once
+ * the export is done unless movies.export.exit=false.
+ */
+@Component
+@ConditionalOnProperty(name = "movies.export.file")
+public class MovieExportRunner implements ApplicationRunner {
+
+  @Autowired
+  private MovieExporter movieExporter;
+
+  @Autowired
+  private ApplicationContext context;
+
+  @Value("${movies.export.file}")
+  private Path file;
+
+  @Value("${movies.export.checkpoint-file:}")
+  private String checkpointFile;
+
+  @Value("${movies.export.exit:true}")
+  private boolean exit;
+
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    Path checkpoint = checkpointFile.isBlank()
+      ? file.resolveSibling(file.getFileName() + ".checkpoint")
+      : Path.of(checkpointFile);
+    movieExporter.exportToFile(file, checkpoint);
+    if (exit) {
+      System.exit(SpringApplication.exit(context, () -> 0));
+    }
+  }
+}
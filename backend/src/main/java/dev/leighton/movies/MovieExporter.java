@@ -0,0 +1,409 @@
+package dev.leighton.movies;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+/**
+ * Dumps every movie with all of its reviews as gzip-compressed NDJSON, one movie
+ * per line in relaxed extended JSON, with the reviews embedded under "reviews".
+ * Movies are read in _id order one batch at a time (keyset pages, so no movie cursor
+ * is held open while a slow client reads). Each batch's referenced reviews come from
+ * $in queries on their IDs, at most movies.reviews.batch-size IDs per query. When
+ * movies.reviews.embedded-limit keeps only the newest references, a movie whose list
+ * is full may have more: its reviews are streamed from a cursor on imdbId in _id
+ * order (the imdbId_id index) and written as they arrive, merged with the referenced
+ * ones. Memory holds one batch of movies and their referenced reviews, never all of
+ * a movie's reviews. Each movie is written once, with its reviews as of when it was
+ * read.
+ *
+ * Output goes to a channel. Every checkpointEvery movies the current gzip member is
+ * finished, so everything up to that point is a complete gzip stream. A file export
+ * records the last movie _id and the file length there, and a later run truncates
+ * back to that point and carries on. An HTTP client resumes by passing the _id of
+ * the last line it received as after.
+ */
+@Service
+public class MovieExporter {
+
+  private static final Logger log = LoggerFactory.getLogger(MovieExporter.class);
+
+  private static final JsonWriterSettings JSON = JsonWriterSettings.builder()
+    .outputMode(JsonMode.RELAXED)
+    .build();
+
+  private static final byte[] NEWLINE = { '\n' };
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  // Movies per keyset page, and so per review query
+  @Value("${movies.export.batch-size:200}")
+  private int batchSize;
+
+  // Movies between gzip member boundaries (and checkpoints for file exports)
+  @Value("${movies.export.checkpoint-every:10000}")
+  private int checkpointEvery;
+
+  @Value("${movies.export.progress-interval:10s}")
+  private Duration progressInterval;
+
+  // When set, movies only reference their newest reviews and the rest are found by imdbId
+  @Value("${movies.reviews.embedded-limit:0}")
+  private int embeddedLimit;
+
+  // Review IDs per $in query, as in ReviewLoader
+  @Value("${movies.reviews.batch-size:500}")
+  private int reviewBatchSize;
+
+  /**
+   * Writes every movie after the given _id (or all of them when null) to the channel.
+   * The channel is not closed.
+   */
+  public Result export(WritableByteChannel channel, ObjectId after, String target)
+    throws IOException {
+    return export(channel, new Checkpoint(after, 0, 0, 0), target, null);
+  }
+
+  /**
+   * Exports to a file, resuming from its checkpoint file when an earlier run was cut
+   * short. The checkpoint file is removed once the export completes.
+   */
+  public Result exportToFile(Path file, Path checkpointFile) throws IOException {
+    Checkpoint start = Checkpoint.read(checkpointFile);
+    try (
+      FileChannel channel = FileChannel.open(
+        file,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE
+      )
+    ) {
+      if (start == null) {
+        start = new Checkpoint(null, 0, 0, 0);
+      } else {
+        log.info("Resuming export to {} after movie {}", file, start.after());
+      }
+      // Drop whatever was written after the last checkpoint, possibly half a gzip member
+      channel.truncate(start.bytes());
+      channel.position(start.bytes());
+      Result result = export(channel, start, file.toString(), checkpointFile);
+      channel.force(true);
+      Files.deleteIfExists(checkpointFile);
+      return result;
+    }
+  }
+
+  private Result export(
+    WritableByteChannel channel,
+    Checkpoint start,
+    String target,
+    Path checkpointFile
+  ) throws IOException {
+    long startNanos = System.nanoTime();
+    long nextReport = startNanos + progressInterval.toNanos();
+    CountingChannel counting = new CountingChannel(channel, start.bytes());
+    OutputStream buffered = new BufferedOutputStream(
+      Channels.newOutputStream(counting),
+      64 * 1024
+    );
+    GZIPOutputStream gzip = new GZIPOutputStream(buffered, 64 * 1024);
+
+    ObjectId after = start.after();
+    long movies = start.movies();
+    long reviews = start.reviews();
+    long sinceCheckpoint = 0;
+    while (true) {
+      List<Document> batch = nextBatch(after);
+      if (batch.isEmpty()) {
+        break;
+      }
+      Map<ObjectId, List<Document>> reviewsByMovie = findReviews(batch);
+      for (Document movie : batch) {
+        List<Document> referenced = reviewsByMovie.getOrDefault(
+          movie.getObjectId("_id"),
+          List.of()
+        );
+        reviews += writeMovie(gzip, movie, referenced);
+      }
+      movies += batch.size();
+      sinceCheckpoint += batch.size();
+      after = batch.get(batch.size() - 1).getObjectId("_id");
+
+      if (sinceCheckpoint >= checkpointEvery) {
+        // Close this gzip member so the output so far is complete on its own
+        gzip.finish();
+        buffered.flush();
+        if (checkpointFile != null) {
+          if (channel instanceof FileChannel file) {
+            file.force(false);
+          }
+          new Checkpoint(after, counting.bytes, movies, reviews).write(checkpointFile);
+        }
+        gzip = new GZIPOutputStream(buffered, 64 * 1024);
+        sinceCheckpoint = 0;
+      }
+      if (System.nanoTime() - nextReport > 0) {
+        log.info("Exported {} movies and {} reviews to {} so far", movies, reviews, target);
+        nextReport = System.nanoTime() + progressInterval.toNanos();
+      }
+    }
+    gzip.finish();
+    buffered.flush();
+
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+    Result result = new Result(
+      target,
+      movies,
+      reviews,
+      counting.bytes,
+      after == null ? null : after.toHexString(),
+      elapsed.toMillis()
+    );
+    log.info("Export to {} finished: {}", target, result);
+    return result;
+  }
+
+  private List<Document> nextBatch(ObjectId after) {
+    Query query = new Query()
+      .with(Sort.by(Sort.Direction.ASC, "_id"))
+      .limit(batchSize);
+    if (after != null) {
+      query.addCriteria(Criteria.where("_id").gt(after));
+    }
+    return mongoTemplate.find(query, Document.class, "movies");
+  }
+
+  // Writes one NDJSON line: the movie with its reviews, oldest first, under "reviews".
+  // Returns the number of reviews written.
+  private long writeMovie(OutputStream out, Document movie, List<Document> referenced)
+    throws IOException {
+    boolean more = hasUnreferencedReviews(movie);
+    movie.remove("reviewIds");
+    String json = movie.toJson(JSON);
+    // Reopen the document to append the reviews array as the reviews are read
+    out.write(json.substring(0, json.length() - 1).getBytes(StandardCharsets.UTF_8));
+    out.write(", \"reviews\": [".getBytes(StandardCharsets.UTF_8));
+    long written = 0;
+    if (!more) {
+      for (Document review : referenced) {
+        writeReview(out, review, written++);
+      }
+    } else {
+      Query query = new Query(Criteria.where("imdbId").is(movie.getString("imdbId")))
+        .with(Sort.by(Sort.Direction.ASC, "_id"))
+        .cursorBatchSize(reviewBatchSize);
+      try (
+        Stream<Document> stream = mongoTemplate.stream(query, Document.class, "reviews")
+      ) {
+        // Merge two _id-ordered sequences; the referenced ones are also on the cursor
+        // unless they were written before reviews carried an imdbId
+        Iterator<Document> cursor = stream.iterator();
+        int next = 0;
+        while (cursor.hasNext()) {
+          Document review = cursor.next();
+          ObjectId reviewId = review.getObjectId("_id");
+          while (next < referenced.size() && id(referenced.get(next)).compareTo(reviewId) < 0) {
+            writeReview(out, referenced.get(next++), written++);
+          }
+          if (next < referenced.size() && id(referenced.get(next)).equals(reviewId)) {
+            next++;
+          }
+          writeReview(out, review, written++);
+        }
+        while (next < referenced.size()) {
+          writeReview(out, referenced.get(next++), written++);
+        }
+      }
+    }
+    out.write("]}".getBytes(StandardCharsets.UTF_8));
+    out.write(NEWLINE);
+    return written;
+  }
+
+  private static void writeReview(OutputStream out, Document review, long index)
+    throws IOException {
+    if (index > 0) {
+      out.write(", ".getBytes(StandardCharsets.UTF_8));
+    }
+    out.write(review.toJson(JSON).getBytes(StandardCharsets.UTF_8));
+  }
+
+  // With an embedded limit a full reference list, or a count above it, means older
+  // reviews are only reachable through their imdbId
+  private boolean hasUnreferencedReviews(Document movie) {
+    if (embeddedLimit <= 0 || movie.getString("imdbId") == null) {
+      return false;
+    }
+    int references = movie.get("reviewIds") instanceof List<?> list ? list.size() : 0;
+    Number count = movie.get("reviewCount", Number.class);
+    return references >= embeddedLimit || (count != null && count.longValue() > references);
+  }
+
+  // The batch's referenced reviews, by movie _id, oldest first
+  private Map<ObjectId, List<Document>> findReviews(List<Document> batch) {
+    Map<ObjectId, ObjectId> movieByReference = new LinkedHashMap<>();
+    for (Document movie : batch) {
+      ObjectId id = movie.getObjectId("_id");
+      Object references = movie.get("reviewIds");
+      if (references instanceof List<?> list) {
+        for (Object reference : list) {
+          if (reference instanceof ObjectId reviewId) {
+            // A review referenced twice goes to the first movie
+            movieByReference.putIfAbsent(reviewId, id);
+          }
+        }
+      }
+    }
+
+    Map<ObjectId, List<Document>> result = new HashMap<>();
+    // Split the references so no query grows past the server's document size limit
+    List<ObjectId> chunk = new ArrayList<>(Math.min(reviewBatchSize, movieByReference.size()));
+    for (ObjectId reviewId : movieByReference.keySet()) {
+      chunk.add(reviewId);
+      if (chunk.size() == reviewBatchSize) {
+        collect(chunk, movieByReference, result);
+        chunk = new ArrayList<>(reviewBatchSize);
+      }
+    }
+    if (!chunk.isEmpty()) {
+      collect(chunk, movieByReference, result);
+    }
+
+    // The queries each return _id order, but together they don't
+    for (List<Document> reviews : result.values()) {
+      reviews.sort(Comparator.comparing(MovieExporter::id));
+    }
+    return result;
+  }
+
+  // Adds the reviews with the given IDs to their movies' lists
+  private void collect(
+    List<ObjectId> reviewIds,
+    Map<ObjectId, ObjectId> movieByReference,
+    Map<ObjectId, List<Document>> result
+  ) {
+    Query query = new Query(Criteria.where("_id").in(reviewIds));
+    for (Document review : mongoTemplate.find(query, Document.class, "reviews")) {
+      ObjectId movieId = movieByReference.get(id(review));
+      if (movieId != null) {
+        result.computeIfAbsent(movieId, key -> new ArrayList<>()).add(review);
+      }
+    }
+  }
+
+  private static ObjectId id(Document document) {
+    return document.getObjectId("_id");
+  }
+
+  /**
+   * Summary of one export. lastId is the _id of the last movie written, to pass as
+   * after when resuming.
+   */
+  public record Result(
+    String target,
+    long movies,
+    long reviews,
+    long bytes,
+    String lastId,
+    long elapsedMillis
+  ) {}
+
+  /**
+   * Where a file export can resume: the last movie written and the file length right
+   * after the gzip member holding it, plus the counts so far.
+   */
+  private record Checkpoint(ObjectId after, long bytes, long movies, long reviews) {
+    static Checkpoint read(Path file) throws IOException {
+      if (!Files.exists(file)) {
+        return null;
+      }
+      Document document = Document.parse(Files.readString(file));
+      return new Checkpoint(
+        new ObjectId(document.getString("after")),
+        document.get("bytes", Number.class).longValue(),
+        document.get("movies", Number.class).longValue(),
+        document.get("reviews", Number.class).longValue()
+      );
+    }
+
+    void write(Path file) throws IOException {
+      Document document = new Document("after", after.toHexString())
+        .append("bytes", bytes)
+        .append("movies", movies)
+        .append("reviews", reviews);
+      // Write then rename, so a crash never leaves a half-written checkpoint
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      Files.writeString(temp, document.toJson());
+      Files.move(
+        temp,
+        file,
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE
+      );
+    }
+  }
+
+  /**
+   * Passes writes through and counts the bytes, starting from an offset.
+   */
+  private static final class CountingChannel implements WritableByteChannel {
+
+    private final WritableByteChannel delegate;
+
+    private long bytes;
+
+    CountingChannel(WritableByteChannel delegate, long offset) {
+      this.delegate = delegate;
+      this.bytes = offset;
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+      int written = delegate.write(source);
+      bytes += written;
+      return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return delegate.isOpen();
+    }
+
+    @Override
+    public void close() {
+      // The caller owns the underlying channel
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package dev.leighton.movies;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Imports a movie file at startup when movies.import.file is set, e.g.
+ * java -jar movies.jar --movies.import.file=movies.ndjson.gz
+ * Files ending in .gz are decompressed on the fly. The application exits once the
+ * import is done (status 1 if it was cut short or records failed to write) unless
+ * movies.import.exit=false.
+ */
+@Component
+@ConditionalOnProperty(name = "movies.import.file")
+public class MovieImportRunner implements ApplicationRunner {
+
+  private static final Logger log = LoggerFactory.getLogger(MovieImportRunner.class);
+
+  @Autowired
+  private MovieImporter movieImporter;
+
+  @Autowired
+  private ApplicationContext context;
+
+  @Value("${movies.import.file}")
+  private Path file;
+
+  @Value("${movies.import.exit:true}")
+  private boolean exit;
+
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    MovieImporter.Result result;
+    try (InputStream input = open(file)) {
+      result = movieImporter.importMovies(input, file.toString());
+    }
+    for (String error : result.errors()) {
+      log.warn("Import: {}", error);
+    }
+    if (exit) {
+      int status = result.abortedBy() == null && result.failed() == 0 ? 0 : 1;
+      System.exit(SpringApplication.exit(context, () -> status));
+    }
+  }
+
+  private static InputStream open(Path file) throws IOException {
+    InputStream input = Files.newInputStream(file);
+    return file.getFileName().toString().endsWith(".gz")
+      ? new GZIPInputStream(input, 64 * 1024)
+      : input;
+  }
+}
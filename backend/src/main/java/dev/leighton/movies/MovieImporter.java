@@ -0,0 +1,453 @@
+package dev.leighton.movies;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Service;
+
+/**
+ * Loads movies into the movies collection from NDJSON or a JSON array.
+ * The input is parsed one record at a time and at most parallelism + 1 batches are
+ * held at once. Each record is validated and the first occurrence of an imdbId
+ * wins, which means remembering every imdbId read: memory grows by a few dozen bytes
+ * per movie, not by whole records. Valid records are upserted
+ * by imdbId in unordered bulk writes, several batches in flight at a time. An
+ * existing movie keeps its reviews; only the fields present in the record change.
+ * Each written batch is re-read into the search and genre indexes, so imported
+ * movies become searchable while the import runs; the caches are cleared once, at
+ * the end.
+ */
+@Service
+public class MovieImporter {
+
+  private static final Logger log = LoggerFactory.getLogger(MovieImporter.class);
+
+  private static final Pattern IMDB_ID = Pattern.compile("tt\\d{7,10}");
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private MovieService movieService;
+
+  @Autowired
+  private CatalogIndexer catalogIndexer;
+
+  @Value("${movies.import.batch-size:1000}")
+  private int batchSize;
+
+  // Bulk writes in flight at once
+  @Value("${movies.import.parallelism:4}")
+  private int parallelism;
+
+  @Value("${movies.import.progress-interval:5s}")
+  private Duration progressInterval;
+
+  // Invalid records listed in the result; the rest are only counted
+  @Value("${movies.import.max-reported-errors:20}")
+  private int maxReportedErrors;
+
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  // The running import, or the last one to finish
+  private volatile Progress current;
+
+  /**
+   * Imports every record in the input. Throws IllegalStateException when another
+   * import is already running; malformed JSON stops the import, but batches already
+   * written stay written and the result says where parsing stopped.
+   */
+  public Result importMovies(InputStream input, String source) {
+    if (!running.compareAndSet(false, true)) {
+      throw new IllegalStateException("An import is already running");
+    }
+    Progress progress = new Progress(source);
+    current = progress;
+    ExecutorService writers = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "movie-import");
+      thread.setDaemon(true);
+      return thread;
+    });
+    Semaphore inFlight = new Semaphore(parallelism);
+    String abortedBy = null;
+    try {
+      abortedBy = read(input, progress, writers, inFlight);
+    } finally {
+      // Wait for every batch still being written before clearing the caches
+      inFlight.acquireUninterruptibly(parallelism);
+      writers.shutdown();
+      running.set(false);
+    }
+
+    if (progress.written() > 0) {
+      // The indexes here were updated batch by batch; this drops every cached movie
+      // and tells other instances to rebuild theirs
+      movieService.catalogChanged();
+    }
+    Result result = progress.finish(abortedBy);
+    log.info("Movie import from {} finished: {}", source, result);
+    return result;
+  }
+
+  // The running import, or the last one to finish; null if none has run
+  public Result status() {
+    Progress progress = current;
+    return progress == null ? null : progress.snapshot();
+  }
+
+  // Parses and submits batches; returns why parsing stopped early, or null at the end of input
+  private String read(
+    InputStream input,
+    Progress progress,
+    ExecutorService writers,
+    Semaphore inFlight
+  ) {
+    Set<String> seen = new HashSet<>();
+    List<Movie> batch = new ArrayList<>(batchSize);
+    long nextReport = System.nanoTime() + progressInterval.toNanos();
+    try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+      JsonToken token = parser.nextToken();
+      // A top-level array holds the records; otherwise they follow each other as NDJSON
+      boolean array = token == JsonToken.START_ARRAY;
+      if (array) {
+        token = parser.nextToken();
+      }
+      while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+        JsonNode node = objectMapper.readTree(parser);
+        long position = progress.read.incrementAndGet();
+        Movie movie = validate(node, position, progress);
+        if (movie != null) {
+          if (seen.add(movie.getImdbId())) {
+            batch.add(movie);
+          } else {
+            progress.duplicates.incrementAndGet();
+          }
+        }
+        if (batch.size() == batchSize) {
+          submit(batch, progress, writers, inFlight);
+          batch = new ArrayList<>(batchSize);
+        }
+        if (System.nanoTime() - nextReport > 0) {
+          log.info("Movie import from {}: {}", progress.source, progress.snapshot());
+          nextReport = System.nanoTime() + progressInterval.toNanos();
+        }
+        token = parser.nextToken();
+      }
+      if (!batch.isEmpty()) {
+        submit(batch, progress, writers, inFlight);
+      }
+      return null;
+    } catch (IOException e) {
+      // A broken document can't be skipped reliably, so stop at it and keep what was read
+      if (!batch.isEmpty()) {
+        submit(batch, progress, writers, inFlight);
+      }
+      if (e instanceof JsonProcessingException json) {
+        return "Malformed JSON after record " + progress.read.get() + ": " +
+          json.getOriginalMessage();
+      }
+      return "Reading the input failed after record " + progress.read.get() + ": " +
+        e.getMessage();
+    }
+  }
+
+  private void submit(
+    List<Movie> batch,
+    Progress progress,
+    ExecutorService writers,
+    Semaphore inFlight
+  ) {
+    // Blocks the parser while all writers are busy, so unwritten batches can't pile up
+    inFlight.acquireUninterruptibly();
+    try {
+      writers.execute(() -> {
+        try {
+          write(batch, progress);
+        } finally {
+          inFlight.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      inFlight.release();
+      throw e;
+    }
+  }
+
+  private void write(List<Movie> batch, Progress progress) {
+    List<Pair<Query, Update>> upserts = new ArrayList<>(batch.size());
+    for (Movie movie : batch) {
+      Query query = Query.query(Criteria.where("imdbId").is(movie.getImdbId()));
+      upserts.add(Pair.of(query, toUpdate(movie)));
+    }
+    try {
+      BulkWriteResult result = mongoTemplate
+        .bulkOps(BulkOperations.BulkMode.UNORDERED, Movie.class)
+        .upsert(upserts)
+        .execute();
+      progress.record(result, 0);
+    } catch (BulkOperationException e) {
+      // Unordered: everything but the failed writes went through
+      progress.record(e.getResult(), e.getErrors().size());
+      progress.error(
+        "Bulk write failed for " + e.getErrors().size() + " movies" +
+        (e.getErrors().isEmpty() ? "" : ": " + e.getErrors().get(0).getMessage())
+      );
+    } catch (RuntimeException e) {
+      // Anything else would vanish into the executor; count the whole batch as failed
+      progress.failed.addAndGet(batch.size());
+      progress.error("Bulk write of " + batch.size() + " movies failed: " + e.getMessage());
+      log.warn("Bulk write of {} movies failed", batch.size(), e);
+      return;
+    }
+    index(batch);
+  }
+
+  // Puts the batch's movies, as stored, into this instance's indexes
+  private void index(List<Movie> batch) {
+    List<String> imdbIds = new ArrayList<>(batch.size());
+    for (Movie movie : batch) {
+      imdbIds.add(movie.getImdbId());
+    }
+    try {
+      catalogIndexer.reindex(imdbIds);
+    } catch (RuntimeException e) {
+      // The movies are stored; they will be picked up by the next rebuild
+      log.warn("Indexing {} imported movies failed", imdbIds.size(), e);
+    }
+  }
+
+  private Movie validate(JsonNode node, long position, Progress progress) {
+    if (!node.isObject()) {
+      progress.invalid(position, "not a JSON object");
+      return null;
+    }
+    String imdbId = text(node, "imdbId");
+    if (imdbId == null || !IMDB_ID.matcher(imdbId).matches()) {
+      progress.invalid(position, "imdbId missing or not like tt0123456");
+      return null;
+    }
+    String title = text(node, "title");
+    if (title == null || title.isBlank()) {
+      progress.invalid(position, imdbId + ": title missing");
+      return null;
+    }
+    for (String field : List.of("releaseDate", "trailerLink", "poster")) {
+      if (node.has(field) && !node.get(field).isTextual() && !node.get(field).isNull()) {
+        progress.invalid(position, imdbId + ": " + field + " is not a string");
+        return null;
+      }
+    }
+    List<String> genres = strings(node, "genres");
+    List<String> backdrops = strings(node, "backdrops");
+    if (genres == null || backdrops == null) {
+      progress.invalid(position, imdbId + ": genres and backdrops must be arrays of strings");
+      return null;
+    }
+    return new Movie(
+      imdbId,
+      title.trim(),
+      text(node, "releaseDate"),
+      text(node, "trailerLink"),
+      text(node, "poster"),
+      node.has("backdrops") ? backdrops : null,
+      node.has("genres") ? genres : null
+    );
+  }
+
+  // Sets the fields the record has; a new movie also starts with no reviews
+  private static Update toUpdate(Movie movie) {
+    Update update = new Update().set("title", movie.getTitle());
+    if (movie.getReleaseDate() != null) {
+      update.set("releaseDate", movie.getReleaseDate());
+    }
+    if (movie.getTrailerLink() != null) {
+      update.set("trailerLink", movie.getTrailerLink());
+    }
+    if (movie.getPoster() != null) {
+      update.set("poster", movie.getPoster());
+    }
+    if (movie.getGenres() != null) {
+      update.set("genres", movie.getGenres());
+    }
+    if (movie.getBackdrops() != null) {
+      update.set("backdrops", movie.getBackdrops());
+    }
+    return update.setOnInsert("reviewIds", List.of()).setOnInsert("reviewCount", 0L);
+  }
+
+  private static String text(JsonNode node, String field) {
+    JsonNode value = node.get(field);
+    return value != null && value.isTextual() ? value.asText() : null;
+  }
+
+  // The array's strings, an empty list when the field is absent,
+  // or null when it isn't an array of strings
+  private static List<String> strings(JsonNode node, String field) {
+    JsonNode value = node.get(field);
+    if (value == null || value.isNull()) {
+      return List.of();
+    }
+    if (!value.isArray()) {
+      return null;
+    }
+    List<String> result = new ArrayList<>(value.size());
+    for (JsonNode item : value) {
+      if (!item.isTextual()) {
+        return null;
+      }
+      result.add(item.asText());
+    }
+    return result;
+  }
+
+  /**
+   * Counters of one import, updated by the parser and the writer threads.
+   */
+  private final class Progress {
+
+    private final String source;
+
+    private final Instant startedAt = Instant.now();
+
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicLong read = new AtomicLong();
+
+    private final AtomicLong invalid = new AtomicLong();
+
+    private final AtomicLong duplicates = new AtomicLong();
+
+    private final AtomicLong inserted = new AtomicLong();
+
+    private final AtomicLong updated = new AtomicLong();
+
+    private final AtomicLong unchanged = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicInteger batches = new AtomicInteger();
+
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicReference<Result> finished = new AtomicReference<>();
+
+    Progress(String source) {
+      this.source = source;
+    }
+
+    void record(BulkWriteResult result, int failures) {
+      batches.incrementAndGet();
+      inserted.addAndGet(result.getUpserts().size());
+      updated.addAndGet(result.getModifiedCount());
+      // Matched but identical to what is stored
+      unchanged.addAndGet(result.getMatchedCount() - result.getModifiedCount());
+      failed.addAndGet(failures);
+    }
+
+    void invalid(long position, String reason) {
+      invalid.incrementAndGet();
+      error("Record " + position + ": " + reason);
+    }
+
+    void error(String message) {
+      synchronized (errors) {
+        if (errors.size() < maxReportedErrors) {
+          errors.add(message);
+        }
+      }
+    }
+
+    long written() {
+      return inserted.get() + updated.get();
+    }
+
+    Result finish(String abortedBy) {
+      Result result = build(true, abortedBy);
+      finished.set(result);
+      return result;
+    }
+
+    Result snapshot() {
+      Result result = finished.get();
+      return result != null ? result : build(false, null);
+    }
+
+    private Result build(boolean done, String abortedBy) {
+      Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+      long millis = Math.max(1, elapsed.toMillis());
+      return new Result(
+        source,
+        startedAt,
+        done,
+        abortedBy,
+        read.get(),
+        invalid.get(),
+        duplicates.get(),
+        inserted.get(),
+        updated.get(),
+        unchanged.get(),
+        failed.get(),
+        batches.get(),
+        elapsed.toMillis(),
+        read.get() * 1000 / millis,
+        List.copyOf(errors)
+      );
+    }
+  }
+
+  /**
+   * Where an import stands, or how it ended. recordsPerSecond counts every record
+   * read, valid or not.
+   */
+  public record Result(
+    String source,
+    Instant startedAt,
+    boolean finished,
+    String abortedBy,
+    long read,
+    long invalid,
+    long duplicates,
+    long inserted,
+    long updated,
+    long unchanged,
+    long failed,
+    int batches,
+    long elapsedMillis,
+    long recordsPerSecond,
+    List<String> errors
+  ) {}
+}
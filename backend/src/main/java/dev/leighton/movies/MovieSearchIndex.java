@@ -0,0 +1,305 @@
+package dev.leighton.movies;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory inverted index over movie titles for search and type-ahead.
+ * Titles are split into case-folded, accent-free terms. Each term maps to a sorted
+ * array of movie ordinals, and the terms live in a sorted skip list, so the last
+ * (possibly partial) query word is answered with a prefix range scan.
+ * Reads take no locks; writes are serialised and replace posting arrays copy-on-write.
+ * Updates apply to the live index term by term rather than to a copy. A re-indexed
+ * movie keeps its ordinal, gains its new terms before its old ones are dropped, and
+ * its entry is swapped in one write, so a search during the update can match it
+ * through either title but never loses it.
+ */
+@Component
+public class MovieSearchIndex {
+
+  private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+  private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+  private static final int[] EMPTY = new int[0];
+
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  private volatile State state = new State();
+
+  public void rebuild(List<MovieCard> cards) {
+    // Build off to the side, then swap, so readers never see a half-built index
+    State fresh = new State();
+    for (MovieCard card : cards) {
+      add(fresh, card);
+    }
+    writeLock.lock();
+    try {
+      state = fresh;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  // Adds or re-indexes the given movies; a re-indexed movie keeps its ordinal
+  public void index(List<MovieCard> cards) {
+    writeLock.lock();
+    try {
+      for (MovieCard card : cards) {
+        if (card.getImdbId() == null) {
+          continue;
+        }
+        if (card.getTitle() == null) {
+          // Not searchable any more
+          remove(state, card.getImdbId());
+        } else if (state.ordinals.containsKey(card.getImdbId())) {
+          replace(state, card);
+        } else {
+          add(state, card);
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  public void remove(Collection<String> imdbIds) {
+    writeLock.lock();
+    try {
+      for (String imdbId : imdbIds) {
+        remove(state, imdbId);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  public List<MovieCard> search(String query, int limit) {
+    List<String> tokens = tokenize(query);
+    if (tokens.isEmpty() || limit <= 0) {
+      return List.of();
+    }
+    State current = state;
+
+    // Every complete word must match exactly; the last word matches as a prefix
+    BitSet candidates = null;
+    for (int i = 0; i < tokens.size() - 1; i++) {
+      BitSet matches = toBitSet(current.terms.getOrDefault(tokens.get(i), EMPTY));
+      candidates = intersect(candidates, matches);
+      if (candidates.isEmpty()) {
+        return List.of();
+      }
+    }
+    String prefix = tokens.get(tokens.size() - 1);
+    BitSet prefixMatches = new BitSet();
+    for (int[] postings : prefixRange(current.terms, prefix).values()) {
+      for (int ordinal : postings) {
+        prefixMatches.set(ordinal);
+      }
+    }
+    candidates = intersect(candidates, prefixMatches);
+
+    // Keep the best `limit` matches in a min-heap of size limit
+    String normalizedQuery = String.join(" ", tokens);
+    Comparator<Scored> byRank = Comparator.comparingInt(Scored::score)
+      .thenComparing(scored -> -scored.card().getTitle().length())
+      .thenComparing(scored -> scored.card().getTitle(), Comparator.reverseOrder());
+    PriorityQueue<Scored> top = new PriorityQueue<>(limit + 1, byRank);
+    Entry[] entries = current.entries;
+    for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+      Entry entry = entries[ordinal];
+      if (entry == null) {
+        continue;
+      }
+      top.add(new Scored(entry.card(), score(entry.normalizedTitle(), normalizedQuery)));
+      if (top.size() > limit) {
+        top.poll();
+      }
+    }
+
+    List<MovieCard> results = new ArrayList<>(top.size());
+    while (!top.isEmpty()) {
+      results.add(top.poll().card());
+    }
+    // The heap hands out the weakest match first
+    Collections.reverse(results);
+    return results;
+  }
+
+  public Map<String, Object> stats() {
+    State current = state;
+    long postings = 0;
+    long termChars = 0;
+    for (Map.Entry<String, int[]> entry : current.terms.entrySet()) {
+      postings += entry.getValue().length;
+      termChars += entry.getKey().length();
+    }
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("movies", current.ordinals.size());
+    stats.put("terms", current.terms.size());
+    stats.put("postings", postings);
+    // Rough estimate: 4 bytes per posting, 2 bytes per term char plus ~80 bytes of node/object overhead per term
+    stats.put("estimatedBytes", postings * 4 + termChars * 2 + current.terms.size() * 80L);
+    return stats;
+  }
+
+  static List<String> tokenize(String text) {
+    if (text == null) {
+      return List.of();
+    }
+    // Case-fold and strip accents so "Amélie" matches "amelie"
+    String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+      .replaceAll("")
+      .toLowerCase(Locale.ROOT);
+    List<String> tokens = new ArrayList<>();
+    for (String token : NON_ALPHANUMERIC.split(folded)) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  private static int score(String title, String normalizedQuery) {
+    if (title.equals(normalizedQuery)) {
+      return 3;
+    }
+    return title.startsWith(normalizedQuery) ? 2 : 1;
+  }
+
+  private static NavigableMap<String, int[]> prefixRange(
+    ConcurrentSkipListMap<String, int[]> terms,
+    String prefix
+  ) {
+    // All terms starting with prefix: prefix <= term < prefix + Character.MAX_VALUE
+    return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+  }
+
+  private static BitSet toBitSet(int[] postings) {
+    BitSet bits = new BitSet();
+    for (int ordinal : postings) {
+      bits.set(ordinal);
+    }
+    return bits;
+  }
+
+  private static BitSet intersect(BitSet current, BitSet next) {
+    if (current == null) {
+      return next;
+    }
+    current.and(next);
+    return current;
+  }
+
+  private static void add(State state, MovieCard card) {
+    if (card.getImdbId() == null || card.getTitle() == null) {
+      return;
+    }
+    int ordinal = state.size;
+    if (ordinal == state.entries.length) {
+      // Grow the array before publishing any postings that point into it
+      state.entries = Arrays.copyOf(state.entries, ordinal * 2);
+    }
+    List<String> tokens = tokenize(card.getTitle());
+    state.entries[ordinal] = new Entry(card, String.join(" ", tokens));
+    state.size++;
+    state.ordinals.put(card.getImdbId(), ordinal);
+
+    for (String term : new LinkedHashSet<>(tokens)) {
+      int[] postings = state.terms.getOrDefault(term, EMPTY);
+      int[] updated = Arrays.copyOf(postings, postings.length + 1);
+      // New ordinals are always the largest, so the array stays sorted
+      updated[postings.length] = ordinal;
+      state.terms.put(term, updated);
+    }
+  }
+
+  private static void replace(State state, MovieCard card) {
+    int ordinal = state.ordinals.get(card.getImdbId());
+    Entry old = state.entries[ordinal];
+    List<String> tokens = tokenize(card.getTitle());
+    Set<String> terms = new LinkedHashSet<>(tokens);
+
+    // New terms first, then the entry, then stale terms, so the movie stays findable
+    for (String term : terms) {
+      int[] postings = state.terms.getOrDefault(term, EMPTY);
+      int at = Arrays.binarySearch(postings, ordinal);
+      if (at < 0) {
+        // Keep the array sorted: the reused ordinal may be anywhere in it
+        int insert = -at - 1;
+        int[] updated = new int[postings.length + 1];
+        System.arraycopy(postings, 0, updated, 0, insert);
+        updated[insert] = ordinal;
+        System.arraycopy(postings, insert, updated, insert + 1, postings.length - insert);
+        state.terms.put(term, updated);
+      }
+    }
+    state.entries[ordinal] = new Entry(card, String.join(" ", tokens));
+    for (String term : new LinkedHashSet<>(tokenize(old.card().getTitle()))) {
+      if (!terms.contains(term)) {
+        dropPosting(state, term, ordinal);
+      }
+    }
+  }
+
+  private static void remove(State state, String imdbId) {
+    Integer ordinal = state.ordinals.remove(imdbId);
+    if (ordinal == null) {
+      return;
+    }
+    Entry entry = state.entries[ordinal];
+    state.entries[ordinal] = null;
+    Set<String> terms = new LinkedHashSet<>(tokenize(entry.card().getTitle()));
+    for (String term : terms) {
+      dropPosting(state, term, ordinal);
+    }
+  }
+
+  private static void dropPosting(State state, String term, int ordinal) {
+    int[] postings = state.terms.get(term);
+    if (postings == null) {
+      return;
+    }
+    int[] updated = Arrays.stream(postings).filter(o -> o != ordinal).toArray();
+    if (updated.length == 0) {
+      state.terms.remove(term);
+    } else {
+      state.terms.put(term, updated);
+    }
+  }
+
+  private record Entry(MovieCard card, String normalizedTitle) {}
+
+  private record Scored(MovieCard card, int score) {}
+
+  private static final class State {
+
+    final ConcurrentSkipListMap<String, int[]> terms = new ConcurrentSkipListMap<>();
+
+    // Written only under the write lock (or before the state is published)
+    final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+
+    // Ordinal -> entry; slots of removed movies are null. Replaced, never shrunk, when full.
+    volatile Entry[] entries = new Entry[16];
+
+    int size;
+  }
+}
@@ -1,22 +1,142 @@
 package dev.leighton.movies;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 @Service
 public class MovieService {
 
   @Autowired
-  private MovieRepository repository;
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ReviewLoader reviewLoader;
+
+  @Autowired
+  private MovieCache cache;
+
+  @Autowired
+  private MovieSnapshots snapshots;
+
+  @Autowired
+  private InvalidationBus invalidationBus;
+
+  @Value("${movies.page.default-size:20}")
+  private int defaultPageSize;
+
+  @Value("${movies.page.max-size:100}")
+  private int maxPageSize;
 
   public List<Movie> findAllMovies() {
-    return repository.findAll();
+    // On a cache miss: one query for the movies plus one $in query per batch of referenced reviews
+    return cache.getCatalog(() -> reviewLoader.findMovies(new Query()));
   }
 
   public Optional<Movie> findMovieByImdbId(String imdbId) {
-    // Delegates to the repository's custom query method
-    return repository.findMovieByImdbId(imdbId);
+    // Same query as the repository's findMovieByImdbId, but cached and with batched review loading
+    return cache.getMovie(imdbId, id -> {
+      Query query = new Query(Criteria.where("imdbId").is(id)).limit(1);
+      return reviewLoader.findMovies(query).stream().findFirst();
+    });
+  }
+
+  public List<MovieCard> findAllCards() {
+    // Every movie as a card: one collection scan, no review resolution
+    Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id"));
+    query.fields().include(MovieCard.FIELDS);
+    return mongoTemplate.find(query, MovieCard.class, "movies");
+  }
+
+  public List<MovieCard> findCards(Collection<String> imdbIds) {
+    Query query = new Query(Criteria.where("imdbId").in(imdbIds));
+    query.fields().include(MovieCard.FIELDS);
+    return mongoTemplate.find(query, MovieCard.class, "movies");
+  }
+
+  public void streamAllMovies(int chunkSize, Consumer<List<Movie>> consumer) {
+    // Walk the collection with a cursor; the next batch is only fetched once the
+    // consumer has dealt with the current chunk, so memory use does not grow with the catalog
+    Query query = new Query()
+      .with(Sort.by(Sort.Direction.ASC, "_id"))
+      .cursorBatchSize(chunkSize);
+    try (
+      Stream<Document> documents = mongoTemplate.stream(query, Document.class, "movies")
+    ) {
+      List<Document> chunk = new ArrayList<>(chunkSize);
+      documents.forEach(document -> {
+        chunk.add(document);
+        if (chunk.size() == chunkSize) {
+          consumer.accept(reviewLoader.toMovies(chunk));
+          chunk.clear();
+        }
+      });
+      if (!chunk.isEmpty()) {
+        consumer.accept(reviewLoader.toMovies(chunk));
+      }
+    }
+  }
+
+  public void invalidate(String imdbId) {
+    // Called after a write that changes the movie or its reviews; other instances evict too
+    evict(imdbId);
+    invalidationBus.publish(InvalidationEvent.Type.MOVIE, imdbId);
+  }
+
+  // Drops the movie from this instance's caches only
+  public void evict(String imdbId) {
+    cache.evict(imdbId);
+    snapshots.evict(imdbId);
+  }
+
+  // Called after a bulk change to the catalog; other instances evict and reindex too
+  public void catalogChanged() {
+    evictAll();
+    invalidationBus.publish(InvalidationEvent.Type.CATALOG, InvalidationEvent.ALL);
+  }
+
+  public void evictAll() {
+    cache.evictAll();
+    snapshots.evictAll();
+  }
+
+  public CursorPage<MovieCard> findMovieCards(String cursor, Integer size) {
+    // Clamp the requested page size to the configured bounds
+    int pageSize = size == null ? defaultPageSize : size;
+    pageSize = Math.max(1, Math.min(pageSize, maxPageSize));
+
+    // Keyset pagination: continue strictly after the last _id of the previous page,
+    // which is a single range scan on the _id index regardless of how deep we are
+    Query query = new Query();
+    if (cursor != null && !cursor.isBlank()) {
+      query.addCriteria(Criteria.where("_id").gt(PageCursor.decode(cursor)));
+    }
+    query.with(Sort.by(Sort.Direction.ASC, "_id"));
+    // Fetch one extra document to find out whether another page exists
+    query.limit(pageSize + 1);
+    query.fields().include(MovieCard.FIELDS);
+
+    List<MovieCard> cards = mongoTemplate.find(query, MovieCard.class, "movies");
+
+    String nextCursor = null;
+    if (cards.size() > pageSize) {
+      cards = cards.subList(0, pageSize);
+      ObjectId lastId = cards.get(pageSize - 1).getId();
+      nextCursor = PageCursor.encode(lastId);
+    }
+
+    return new CursorPage<>(cards, nextCursor);
   }
 }
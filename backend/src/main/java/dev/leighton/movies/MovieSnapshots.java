@@ -0,0 +1,220 @@
+package dev.leighton.movies;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the movie endpoints' responses as ready-to-send bytes.
+ * A snapshot holds the encoded body (JSON, CBOR or Smile), an optional gzip copy and a
+ * strong ETag derived from the content. Snapshots are rebuilt only after MovieService
+ * invalidates the movie, so repeated reads skip Jackson entirely. Each format is
+ * encoded on first request, so the binary ones cost nothing until a client asks for them.
+ */
+@Component
+public class MovieSnapshots {
+
+  private static final String CATALOG_KEY = "catalog";
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private MappingJackson2CborHttpMessageConverter cborConverter;
+
+  @Autowired
+  private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+  @Value("${movies.snapshot.enabled:true}")
+  private boolean enabled;
+
+  @Value("${movies.snapshot.gzip:true}")
+  private boolean gzip;
+
+  // Keyed by format and imdbId (or the catalog key)
+  private final AsyncCache<String, Snapshot> movies;
+
+  private final AsyncCache<String, Snapshot> catalog;
+
+  public MovieSnapshots(
+    @Value("${movies.cache.max-size:1000}") long maxSize,
+    @Value("${movies.cache.ttl:10m}") Duration ttl
+  ) {
+    // Same bounds as MovieCache, since every snapshot is derived from a cached movie
+    this.movies = Caffeine.newBuilder()
+      .maximumSize(maxSize * Format.values().length)
+      .expireAfterWrite(ttl)
+      .buildAsync();
+    this.catalog = Caffeine.newBuilder()
+      .maximumSize(Format.values().length)
+      .expireAfterWrite(ttl)
+      .buildAsync();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public Snapshot getCatalog(MovieService service) {
+    return getCatalog(service, Format.JSON);
+  }
+
+  public Snapshot getCatalog(MovieService service, Format format) {
+    return CacheLoads.get(catalog, key(format, CATALOG_KEY), key ->
+      encode(service.findAllMovies(), format)
+    );
+  }
+
+  public Snapshot getMovie(String imdbId, MovieService service) {
+    return getMovie(imdbId, service, Format.JSON);
+  }
+
+  public Snapshot getMovie(String imdbId, MovieService service, Format format) {
+    // Optional.empty() encodes as null, the same body Jackson writes for a missing movie
+    return CacheLoads.get(movies, key(format, imdbId), key ->
+      encode(service.findMovieByImdbId(imdbId), format)
+    );
+  }
+
+  public void evict(String imdbId) {
+    for (Format format : Format.values()) {
+      movies.synchronous().invalidate(key(format, imdbId));
+      catalog.synchronous().invalidate(key(format, CATALOG_KEY));
+    }
+  }
+
+  public void evictAll() {
+    movies.synchronous().invalidateAll();
+    catalog.synchronous().invalidateAll();
+  }
+
+  private static String key(Format format, String id) {
+    return format.name() + ":" + id;
+  }
+
+  private ObjectMapper mapper(Format format) {
+    return switch (format) {
+      case JSON -> objectMapper;
+      case CBOR -> cborConverter.getObjectMapper();
+      case SMILE -> smileConverter.getObjectMapper();
+    };
+  }
+
+  private Snapshot encode(Object value, Format format) {
+    try {
+      byte[] body = mapper(format).writeValueAsBytes(value);
+      String hash = HexFormat.of().formatHex(
+        MessageDigest.getInstance("SHA-256").digest(body),
+        0,
+        16
+      );
+      byte[] gzipBody = gzip ? compress(body) : null;
+      return new Snapshot(
+        format,
+        body,
+        gzipBody,
+        "\"" + hash + "\"",
+        "\"" + hash + "-gzip\""
+      );
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not encode movie snapshot", e);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private static byte[] compress(byte[] body) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+    try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+      gzipOut.write(body);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Encoded response body. The gzip copy gets its own ETag because it is a different
+   * representation of the same content.
+   */
+  public record Snapshot(
+    Format format,
+    byte[] body,
+    byte[] gzipBody,
+    String etag,
+    String gzipEtag
+  ) {}
+
+  /**
+   * Encodings the snapshot endpoints can produce. Binary formats keep the same field
+   * names and structure as the JSON, but drop quoting and use length-prefixed strings.
+   */
+  public enum Format {
+    JSON(MediaType.APPLICATION_JSON),
+    CBOR(MediaType.APPLICATION_CBOR),
+    SMILE(new MediaType("application", "x-jackson-smile"));
+
+    private final MediaType mediaType;
+
+    Format(MediaType mediaType) {
+      this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+      return mediaType;
+    }
+
+    // The client's preferred format from its Accept header; JSON if none of ours is listed
+    public static Format negotiate(String accept) {
+      if (accept == null || accept.isBlank()) {
+        return JSON;
+      }
+      List<MediaType> accepted;
+      try {
+        accepted = MediaType.parseMediaTypes(accept);
+      } catch (InvalidMediaTypeException e) {
+        return JSON;
+      }
+      Format best = JSON;
+      double bestQuality = -1;
+      for (MediaType type : accepted) {
+        Format format = match(type);
+        if (format != null && type.getQualityValue() > bestQuality) {
+          best = format;
+          bestQuality = type.getQualityValue();
+        }
+      }
+      return best;
+    }
+
+    private static Format match(MediaType type) {
+      // Wildcards (*/*, application/*) get the default JSON
+      if (type.isWildcardType() || type.isWildcardSubtype()) {
+        return JSON;
+      }
+      for (Format format : values()) {
+        if (format.mediaType.equalsTypeAndSubtype(type)) {
+          return format;
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -2,11 +2,18 @@ package dev.leighton.movies;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class MoviesApplication {
 
+  // Startup steps kept for StartupReport; a boot records a few thousand
+  private static final int STARTUP_STEPS = 8192;
+
   public static void main(String[] args) {
-    SpringApplication.run(MoviesApplication.class, args);
+    SpringApplication application = new SpringApplication(MoviesApplication.class);
+    // Record how long each startup phase and bean takes, for StartupReport
+    application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+    application.run(args);
   }
 }
@@ -0,0 +1,29 @@
+package dev.leighton.movies;
+
+import java.util.Base64;
+import org.bson.types.ObjectId;
+
+/**
+ * Encodes and decodes the opaque continuation tokens used for keyset pagination.
+ * A token is the URL-safe Base64 form of the last ObjectId returned on the previous page.
+ */
+public final class PageCursor {
+
+  private PageCursor() {}
+
+  public static String encode(ObjectId lastId) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(
+      lastId.toByteArray()
+    );
+  }
+
+  public static ObjectId decode(String cursor) {
+    try {
+      byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+      return new ObjectId(bytes);
+    } catch (IllegalArgumentException e) {
+      // Both malformed Base64 and a wrong byte length end up here
+      throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+    }
+  }
+}
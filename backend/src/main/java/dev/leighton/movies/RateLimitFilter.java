@@ -0,0 +1,204 @@
+package dev.leighton.movies;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Admission control for the expensive routes (login runs BCrypt, review posts write
+ * to Mongo twice). Runs before Spring Security. A request is checked against its
+ * client IP bucket, then its principal bucket. The principal comes from the bearer
+ * token, the session's security context, or a request parameter for anonymous
+ * requests. Over the limit gets 429 with Retry-After. Past a route's max-in-flight
+ * it gets 503, so a pile-up sheds load instead of queueing on the pool.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+  private static final String BEARER = "Bearer ";
+
+  private final RateLimiter limiter;
+
+  private final RateLimitProperties properties;
+
+  private final TokenService tokenService;
+
+  private final String frontendUrl;
+
+  private final List<GuardedRoute> routes = new ArrayList<>();
+
+  public RateLimitFilter(
+    RateLimiter limiter,
+    RateLimitProperties properties,
+    TokenService tokenService,
+    String frontendUrl
+  ) {
+    this.limiter = limiter;
+    this.properties = properties;
+    this.tokenService = tokenService;
+    this.frontendUrl = frontendUrl;
+    for (Map.Entry<String, RateLimitProperties.Route> entry : properties
+      .getRoutes()
+      .entrySet()) {
+      RateLimitProperties.Route route = entry.getValue();
+      routes.add(
+        new GuardedRoute(
+          entry.getKey(),
+          route,
+          route.getMaxInFlight() > 0 ? new Semaphore(route.getMaxInFlight()) : null
+        )
+      );
+    }
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !properties.isEnabled() || routes.isEmpty();
+  }
+
+  @Override
+  protected void doFilterInternal(
+    HttpServletRequest request,
+    HttpServletResponse response,
+    FilterChain filterChain
+  ) throws ServletException, IOException {
+    GuardedRoute guarded = match(request);
+    if (guarded == null) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    RateLimitProperties.Route route = guarded.route();
+
+    if (route.getIp() != null) {
+      long wait = limiter.tryAcquire(guarded.name() + ":ip:" + clientIp(request), route.getIp());
+      if (wait > 0) {
+        reject(response, HttpStatus.TOO_MANY_REQUESTS, wait, "Too many requests");
+        return;
+      }
+    }
+
+    if (route.getPrincipal() != null) {
+      String principal = principal(request, route);
+      if (principal != null) {
+        long wait = limiter.tryAcquire(
+          guarded.name() + ":principal:" + principal,
+          route.getPrincipal()
+        );
+        if (wait > 0) {
+          reject(response, HttpStatus.TOO_MANY_REQUESTS, wait, "Too many requests");
+          return;
+        }
+      }
+    }
+
+    Semaphore inFlight = guarded.inFlight();
+    if (inFlight == null) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    if (!inFlight.tryAcquire()) {
+      reject(
+        response,
+        HttpStatus.SERVICE_UNAVAILABLE,
+        TimeUnit.SECONDS.toNanos(1),
+        "Server busy, try again shortly"
+      );
+      return;
+    }
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      inFlight.release();
+    }
+  }
+
+  private GuardedRoute match(HttpServletRequest request) {
+    String path = request.getRequestURI();
+    for (GuardedRoute guarded : routes) {
+      RateLimitProperties.Route route = guarded.route();
+      if (path.equals(route.getPath()) && request.getMethod().equalsIgnoreCase(route.getMethod())) {
+        return guarded;
+      }
+    }
+    return null;
+  }
+
+  private String clientIp(HttpServletRequest request) {
+    String header = request.getHeader(properties.getClientIpHeader());
+    if (header != null && !header.isBlank()) {
+      // X-Forwarded-For style lists start with the original client
+      int comma = header.indexOf(',');
+      return (comma >= 0 ? header.substring(0, comma) : header).trim();
+    }
+    return request.getRemoteAddr();
+  }
+
+  private String principal(HttpServletRequest request, RateLimitProperties.Route route) {
+    String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+    if (authorization != null && authorization.startsWith(BEARER)) {
+      Optional<String> username = tokenService.verify(authorization.substring(BEARER.length()));
+      if (username.isPresent()) {
+        return username.get();
+      }
+    }
+
+    HttpSession session = request.getSession(false);
+    if (session != null) {
+      Object context = session.getAttribute(
+        HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY
+      );
+      if (context instanceof SecurityContext securityContext) {
+        Authentication authentication = securityContext.getAuthentication();
+        if (authentication != null) {
+          return authentication.getName();
+        }
+      }
+    }
+
+    // Anonymous requests such as login are keyed by the account they target
+    if (route.getPrincipalParameter() != null) {
+      String value = request.getParameter(route.getPrincipalParameter());
+      if (value != null && !value.isBlank()) {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  private void reject(
+    HttpServletResponse response,
+    HttpStatus status,
+    long waitNanos,
+    String message
+  ) throws IOException {
+    // Spring Security's CORS handling hasn't run yet, so let the frontend read the error
+    response.setHeader("Access-Control-Allow-Origin", frontendUrl);
+    response.setHeader("Access-Control-Allow-Credentials", "true");
+
+    long seconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    response.setStatus(status.value());
+    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+    response.setContentType("application/json");
+    response.getWriter().write("{\"error\": \"" + message + "\"}");
+  }
+
+  private record GuardedRoute(
+    String name,
+    RateLimitProperties.Route route,
+    Semaphore inFlight
+  ) {}
+}
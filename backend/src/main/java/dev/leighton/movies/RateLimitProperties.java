@@ -0,0 +1,177 @@
+package dev.leighton.movies;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for RateLimitFilter, bound from movies.rate-limit.* properties.
+ * Each route names a method and exact path, with optional per-IP and per-principal
+ * limits and an optional cap on concurrent requests, for example
+ * movies.rate-limit.routes.login.ip.permits=20 and ...routes.login.ip.period=1m.
+ */
+@Component
+@ConfigurationProperties(prefix = "movies.rate-limit")
+public class RateLimitProperties {
+
+  private boolean enabled = true;
+
+  // Header the proxy puts the real client address in; the socket address is used when missing
+  private String clientIpHeader = "Fly-Client-IP";
+
+  // Buckets untouched for this long are full again and get dropped
+  private Duration idleTimeout = Duration.ofMinutes(10);
+
+  // Sweep idle buckets early once the map grows past this many entries
+  private int maxBuckets = 100_000;
+
+  private Map<String, Route> routes = new LinkedHashMap<>();
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public String getClientIpHeader() {
+    return clientIpHeader;
+  }
+
+  public void setClientIpHeader(String clientIpHeader) {
+    this.clientIpHeader = clientIpHeader;
+  }
+
+  public Duration getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public void setIdleTimeout(Duration idleTimeout) {
+    this.idleTimeout = idleTimeout;
+  }
+
+  public int getMaxBuckets() {
+    return maxBuckets;
+  }
+
+  public void setMaxBuckets(int maxBuckets) {
+    this.maxBuckets = maxBuckets;
+  }
+
+  public Map<String, Route> getRoutes() {
+    return routes;
+  }
+
+  public void setRoutes(Map<String, Route> routes) {
+    this.routes = routes;
+  }
+
+  public static class Route {
+
+    private String method = "POST";
+
+    private String path;
+
+    private Limit ip;
+
+    private Limit principal;
+
+    // Request parameter used as the principal for anonymous requests (e.g. the login username)
+    private String principalParameter;
+
+    // Concurrent requests allowed on this route before answering 503 (0 for no cap)
+    private int maxInFlight;
+
+    public String getMethod() {
+      return method;
+    }
+
+    public void setMethod(String method) {
+      this.method = method;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public void setPath(String path) {
+      this.path = path;
+    }
+
+    public Limit getIp() {
+      return ip;
+    }
+
+    public void setIp(Limit ip) {
+      this.ip = ip;
+    }
+
+    public Limit getPrincipal() {
+      return principal;
+    }
+
+    public void setPrincipal(Limit principal) {
+      this.principal = principal;
+    }
+
+    public String getPrincipalParameter() {
+      return principalParameter;
+    }
+
+    public void setPrincipalParameter(String principalParameter) {
+      this.principalParameter = principalParameter;
+    }
+
+    public int getMaxInFlight() {
+      return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+      this.maxInFlight = maxInFlight;
+    }
+  }
+
+  /**
+   * A token bucket: permits per period on average, with up to burst requests at once.
+   */
+  public static class Limit {
+
+    private int permits = 60;
+
+    private Duration period = Duration.ofMinutes(1);
+
+    private int burst = 10;
+
+    public int getPermits() {
+      return permits;
+    }
+
+    public void setPermits(int permits) {
+      this.permits = permits;
+    }
+
+    public Duration getPeriod() {
+      return period;
+    }
+
+    public void setPeriod(Duration period) {
+      this.period = period;
+    }
+
+    public int getBurst() {
+      return burst;
+    }
+
+    public void setBurst(int burst) {
+      this.burst = burst;
+    }
+
+    // Time between two permits when the bucket is empty
+    long intervalNanos() {
+      return Math.max(1, period.toNanos() / Math.max(1, permits));
+    }
+  }
+}
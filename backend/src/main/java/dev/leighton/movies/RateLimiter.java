@@ -0,0 +1,71 @@
+package dev.leighton.movies;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Token buckets for RateLimitFilter, one per client key.
+ * Each bucket is a single AtomicLong using the generic cell rate algorithm: it holds
+ * the theoretical arrival time of the next request, and a request is admitted by
+ * moving that time forward with one compare-and-set. There are no locks and no
+ * refill thread. The map is a ConcurrentHashMap, so different keys don't contend.
+ * A bucket whose time is in the past is full, so dropping it loses nothing. Idle
+ * buckets are swept now and then by whichever request notices the sweep is due.
+ */
+@Component
+public class RateLimiter {
+
+  private static final long MIN_SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+  @Autowired
+  private RateLimitProperties properties;
+
+  private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+  private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+  // Returns 0 if the request is admitted, otherwise how many nanos until it would be
+  public long tryAcquire(String key, RateLimitProperties.Limit limit) {
+    long now = System.nanoTime();
+    sweepIfDue(now);
+
+    AtomicLong bucket = buckets.get(key);
+    if (bucket == null) {
+      bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    long interval = limit.intervalNanos();
+    long tolerance = interval * Math.max(1, limit.getBurst());
+    while (true) {
+      long tat = bucket.get();
+      // nanoTime values may be negative, so compare by difference rather than Math.max
+      long next = (tat - now > 0 ? tat : now) + interval;
+      long wait = next - now - tolerance;
+      if (wait > 0) {
+        return wait;
+      }
+      if (bucket.compareAndSet(tat, next)) {
+        return 0;
+      }
+    }
+  }
+
+  public int size() {
+    return buckets.size();
+  }
+
+  private void sweepIfDue(long now) {
+    long last = lastSweep.get();
+    long sinceLast = now - last;
+    // Normally once per idle timeout; at most once a second while the map is too big
+    boolean due =
+      sinceLast >= properties.getIdleTimeout().toNanos() ||
+      (sinceLast >= MIN_SWEEP_INTERVAL_NANOS && buckets.size() > properties.getMaxBuckets());
+    if (due && lastSweep.compareAndSet(last, now)) {
+      long idleBefore = now - properties.getIdleTimeout().toNanos();
+      buckets.values().removeIf(bucket -> bucket.get() - idleBefore < 0);
+    }
+  }
+}
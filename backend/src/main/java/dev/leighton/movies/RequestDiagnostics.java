@@ -0,0 +1,146 @@
+package dev.leighton.movies;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects sampled request traces without blocking the request thread.
+ * Traces go into a fixed-size ring buffer: a writer claims a slot with one atomic
+ * increment and overwrites whatever was there. A background thread drains new
+ * entries to the log, and recent() serves the on-demand dump endpoint.
+ */
+@Component
+public class RequestDiagnostics {
+
+  private static final Logger log = LoggerFactory.getLogger(
+    RequestDiagnostics.class
+  );
+
+  @Autowired
+  private DiagnosticsProperties properties;
+
+  private AtomicReferenceArray<Slot> slots;
+
+  private int mask;
+
+  // Sequence number of the next trace to be written
+  private final AtomicLong next = new AtomicLong();
+
+  // Sequence number of the next trace the background writer will log
+  private long drained;
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private ScheduledExecutorService writer;
+
+  @PostConstruct
+  void start() {
+    int capacity = Integer.highestOneBit(
+      Math.max(2, properties.getBufferSize() - 1)
+    ) << 1;
+    slots = new AtomicReferenceArray<>(capacity);
+    mask = capacity - 1;
+
+    writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "request-diagnostics-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = properties.getDrainInterval().toMillis();
+    writer.scheduleWithFixedDelay(
+      this::drain,
+      interval,
+      interval,
+      TimeUnit.MILLISECONDS
+    );
+  }
+
+  @PreDestroy
+  void stop() {
+    // Flush whatever is left on the writer thread, then let it exit
+    writer.execute(this::drain);
+    writer.shutdown();
+  }
+
+  public boolean shouldSample(String uri) {
+    if (!properties.isEnabled()) {
+      return false;
+    }
+    double rate = sampleRate(uri);
+    return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+  }
+
+  public void record(RequestTrace trace) {
+    long sequence = next.getAndIncrement();
+    slots.set((int) (sequence & mask), new Slot(sequence, trace));
+  }
+
+  public List<RequestTrace> recent(int limit) {
+    // Walk backwards from the newest slot, skipping any that were overwritten meanwhile
+    List<RequestTrace> traces = new ArrayList<>();
+    long newest = next.get() - 1;
+    long oldest = Math.max(0, newest - mask);
+    for (long sequence = newest; sequence >= oldest && traces.size() < limit; sequence--) {
+      Slot slot = slots.get((int) (sequence & mask));
+      if (slot != null && slot.sequence() == sequence) {
+        traces.add(slot.trace());
+      }
+    }
+    return traces;
+  }
+
+  public long droppedCount() {
+    return dropped.get();
+  }
+
+  private double sampleRate(String uri) {
+    // Longest configured prefix wins, otherwise fall back to the default rate
+    double rate = properties.getDefaultSampleRate();
+    int longest = -1;
+    for (Map.Entry<String, Double> route : properties.getRoutes().entrySet()) {
+      String prefix = route.getKey();
+      if (prefix.length() > longest && uri.startsWith(prefix)) {
+        longest = prefix.length();
+        rate = route.getValue();
+      }
+    }
+    return rate;
+  }
+
+  private void drain() {
+    long end = next.get();
+    // If writers lapped us, the oldest entries are gone; skip ahead and count them
+    if (end - drained > slots.length()) {
+      dropped.addAndGet(end - drained - slots.length());
+      drained = end - slots.length();
+    }
+    while (drained < end) {
+      Slot slot = slots.get((int) (drained & mask));
+      if (slot == null || slot.sequence() < drained) {
+        // Slot claimed but not written yet; pick it up on the next run
+        return;
+      }
+      if (slot.sequence() == drained) {
+        log.info("{}", slot.trace());
+      } else {
+        dropped.incrementAndGet();
+      }
+      drained++;
+    }
+  }
+
+  private record Slot(long sequence, RequestTrace trace) {}
+}
@@ -0,0 +1,22 @@
+package dev.leighton.movies;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of one sampled request, as recorded by RequestDiagnostics.
+ * Cookie values and credential headers are never captured; the session is only
+ * identified by a short one-way hash, enough to tell requests of one session apart.
+ */
+public record RequestTrace(
+  Instant timestamp,
+  String method,
+  String uri,
+  int status,
+  long durationMicros,
+  String sessionHash,
+  boolean newSession,
+  Map<String, String> headers,
+  List<String> cookieNames
+) {}
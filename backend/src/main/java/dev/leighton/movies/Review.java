@@ -5,9 +5,12 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "reviews")
+// Serves the per-movie review listing, newest first
+@CompoundIndex(name = "imdbId_id", def = "{'imdbId': 1, '_id': -1}")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -15,6 +18,9 @@ public class Review {
 
   private ObjectId id;
 
+  // The movie this review belongs to (not set on reviews written before it was added)
+  private String imdbId;
+
   private String body;
 
   private LocalDateTime created;
@@ -0,0 +1,108 @@
+package dev.leighton.movies;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads movies together with their reviews using a fixed number of queries.
+ * Reading Movie through the repository resolves every @DocumentReference in reviewIds
+ * with its own lookup. This loader reads the raw movie documents instead, gathers the
+ * referenced review IDs across the whole result set and fetches them with $in queries
+ * of at most batchSize IDs each.
+ */
+@Component
+public class ReviewLoader {
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Value("${movies.reviews.batch-size:500}")
+  private int batchSize;
+
+  public List<Movie> findMovies(Query query) {
+    // Read the movie documents as-is so the references stay plain ObjectIds
+    List<Document> documents = mongoTemplate.find(query, Document.class, "movies");
+    return toMovies(documents);
+  }
+
+  public List<Movie> toMovies(List<Document> documents) {
+    // Collect every referenced review ID, keeping each movie's own ID list aside
+    Set<ObjectId> reviewIds = new LinkedHashSet<>();
+    List<List<ObjectId>> referencesPerMovie = new ArrayList<>(documents.size());
+    for (Document document : documents) {
+      List<ObjectId> references = referencedIds(document);
+      referencesPerMovie.add(references);
+      reviewIds.addAll(references);
+      // Leave an empty list for the converter: it skips an empty @DocumentReference,
+      // but still runs a lookup when the field is missing
+      document.put("reviewIds", List.of());
+    }
+
+    Map<ObjectId, Review> reviews = findReviews(reviewIds);
+
+    List<Movie> movies = new ArrayList<>(documents.size());
+    for (int i = 0; i < documents.size(); i++) {
+      Movie movie = mongoTemplate.getConverter().read(Movie.class, documents.get(i));
+
+      // Reattach the reviews in the order they were referenced, skipping dangling IDs
+      List<Review> movieReviews = new ArrayList<>();
+      for (ObjectId id : referencesPerMovie.get(i)) {
+        Review review = reviews.get(id);
+        if (review != null) {
+          movieReviews.add(review);
+        }
+      }
+      movie.setReviewIds(movieReviews);
+      movies.add(movie);
+    }
+    return movies;
+  }
+
+  public Map<ObjectId, Review> findReviews(Set<ObjectId> ids) {
+    Map<ObjectId, Review> reviews = new HashMap<>();
+    List<ObjectId> batch = new ArrayList<>(Math.min(batchSize, ids.size()));
+    for (ObjectId id : ids) {
+      batch.add(id);
+      if (batch.size() == batchSize) {
+        fetchBatch(batch, reviews);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      fetchBatch(batch, reviews);
+    }
+    return reviews;
+  }
+
+  private void fetchBatch(List<ObjectId> batch, Map<ObjectId, Review> into) {
+    Query query = new Query(Criteria.where("_id").in(batch));
+    for (Review review : mongoTemplate.find(query, Review.class)) {
+      into.put(review.getId(), review);
+    }
+  }
+
+  private static List<ObjectId> referencedIds(Document document) {
+    Object value = document.get("reviewIds");
+    List<ObjectId> ids = new ArrayList<>();
+    if (value instanceof List<?> list) {
+      for (Object element : list) {
+        if (element instanceof ObjectId id) {
+          ids.add(id);
+        }
+      }
+    }
+    return ids;
+  }
+}
@@ -1,21 +1,36 @@
 package dev.leighton.movies;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 @Service
 public class ReviewService {
 
   @Autowired
-  private ReviewRepository repository;
+  private ReviewWriter writer;
+
+  @Autowired
+  private MovieService movieService;
 
   @Autowired
   private MongoTemplate mongoTemplate;
 
+  @Autowired
+  private ReviewStats reviewStats;
+
+  @Value("${movies.page.default-size:20}")
+  private int defaultPageSize;
+
+  @Value("${movies.page.max-size:100}")
+  private int maxPageSize;
+
   public Review createReview(String reviewBody, String imdbId) {
     // Create a new Review object with current timestamps for both created and updated fields
     Review review = new Review(
@@ -23,20 +38,53 @@ public class ReviewService {
       LocalDateTime.now(),
       LocalDateTime.now()
     );
+    review.setImdbId(imdbId);
 
-    // Insert the review into the database and get the saved entity with its generated ID
-
-    review = repository.insert(review);
+    // Insert the review and add a reference to it on the Movie document.
+    // Concurrent submissions may be written together in one batch.
+    ReviewWriter.Written written = writer.write(review, imdbId);
+    review = written.review();
 
-    // Update the Movie document to add a reference to this review
+    // Nothing more to do when the imdbId matched no movie
+    if (written.linked()) {
+      // Drop the cached copy of the movie so the next read includes the new review
+      movieService.invalidate(imdbId);
 
-    mongoTemplate
-      .update(Movie.class)
-      .matching(Criteria.where("imdbId").is(imdbId))
-      .apply(new Update().push("reviewIds").value(review.getId()))
-      .first();
+      // Count it towards the movie's review stats and the leaderboards
+      reviewStats.record(imdbId, review.getId());
+    }
 
     // Return the created review
     return review;
   }
+
+  public CursorPage<Review> findReviews(
+    String imdbId,
+    String cursor,
+    Integer size
+  ) {
+    // Clamp the requested page size to the configured bounds
+    int pageSize = size == null ? defaultPageSize : size;
+    pageSize = Math.max(1, Math.min(pageSize, maxPageSize));
+
+    // Newest first: walk the (imdbId, _id desc) index backwards from the cursor
+    Criteria criteria = Criteria.where("imdbId").is(imdbId);
+    if (cursor != null && !cursor.isBlank()) {
+      criteria = criteria.and("_id").lt(PageCursor.decode(cursor));
+    }
+    Query query = new Query(criteria)
+      .with(Sort.by(Sort.Direction.DESC, "_id"))
+      // Fetch one extra review to find out whether another page exists
+      .limit(pageSize + 1);
+
+    List<Review> reviews = mongoTemplate.find(query, Review.class);
+
+    String nextCursor = null;
+    if (reviews.size() > pageSize) {
+      reviews = reviews.subList(0, pageSize);
+      nextCursor = PageCursor.encode(reviews.get(pageSize - 1).getId());
+    }
+
+    return new CursorPage<>(reviews, nextCursor);
+  }
 }
@@ -0,0 +1,404 @@
+package dev.leighton.movies;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory review statistics per movie and "most reviewed" leaderboards.
+ * Each movie has an all-time counter, its last review time and a ring of 168 hourly
+ * buckets, so 24h and 7d counts are sums over buckets rather than recounts.
+ * Every write bumps the counters and offers the movie to one top-k list per window.
+ * A list is an immutable snapshot swapped under a lock, so reading one is O(k).
+ * Window counts only drop when an hour rolls over, so the lists are recomputed
+ * from all movies at the top of each hour.
+ *
+ * Seeded from the reviews collection at startup, counting only reviews of movies that
+ * exist; after that each instance counts the reviews written through it and linked to
+ * a movie. A rebuild scans reviews up to the ObjectId taken when it starts, and reviews
+ * recorded while it runs are applied to the new counters as well, so none are lost
+ * when they are swapped in.
+ */
+@Component
+public class ReviewStats {
+
+  private static final Logger log = LoggerFactory.getLogger(ReviewStats.class);
+
+  private static final int HOURS = 168;
+
+  private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  // Each bucket packs its epoch hour into the high bits and the count into the low 40
+  private static final int COUNT_BITS = 40;
+
+  private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  // Entries kept per leaderboard, and the most /top can return
+  @Value("${movies.reviews.top.size:100}")
+  private int topSize;
+
+  private volatile Map<String, MovieStats> stats = new ConcurrentHashMap<>();
+
+  // Set while a rebuild runs, so reviews recorded meanwhile reach the new counters too
+  private volatile Rebuild rebuilding;
+
+  private final Map<Window, Leaderboard> leaderboards = new EnumMap<>(Window.class);
+
+  private ScheduledExecutorService scheduler;
+
+  public ReviewStats() {
+    for (Window window : Window.values()) {
+      leaderboards.put(window, new Leaderboard(window));
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    rebuild();
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "review-stats");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // Just after each hour boundary, when the oldest bucket of every window drops out
+    long now = System.currentTimeMillis();
+    long untilNextHour = HOUR_MILLIS - now % HOUR_MILLIS + 1000;
+    scheduler.scheduleAtFixedRate(
+      this::recomputeQuietly,
+      untilNextHour,
+      HOUR_MILLIS,
+      TimeUnit.MILLISECONDS
+    );
+  }
+
+  @PreDestroy
+  void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  // Rebuilds all counters from the reviews collection
+  public synchronized void rebuild() {
+    long start = System.nanoTime();
+    Map<String, MovieStats> fresh = new ConcurrentHashMap<>();
+    // Reviews up to here are scanned; later ones are recorded into fresh as they come
+    ObjectId upTo = new ObjectId();
+    rebuilding = new Rebuild(fresh, upTo);
+    try {
+      scan(fresh, upTo);
+      stats = fresh;
+    } finally {
+      rebuilding = null;
+    }
+    recompute();
+    log.info(
+      "Seeded review stats for {} movies in {} ms",
+      fresh.size(),
+      (System.nanoTime() - start) / 1_000_000
+    );
+  }
+
+  private void scan(Map<String, MovieStats> fresh, ObjectId upTo) {
+    // Reviews can name an imdbId no movie has; those are left out
+    Set<String> movies = new HashSet<>();
+    Query catalog = new Query();
+    catalog.fields().include("imdbId");
+    try (Stream<Movie> stream = mongoTemplate.stream(catalog, Movie.class)) {
+      stream.forEach(movie -> movies.add(movie.getImdbId()));
+    }
+
+    // All-time count and newest review per movie in one grouped pass
+    Aggregation totals = Aggregation.newAggregation(
+      Aggregation.match(Criteria.where("imdbId").ne(null).and("_id").lt(upTo)),
+      Aggregation.group("imdbId").count().as("count").max("_id").as("lastId")
+    );
+    for (Document row : mongoTemplate
+      .aggregate(totals, "reviews", Document.class)
+      .getMappedResults()) {
+      if (!movies.contains(row.getString("_id"))) {
+        continue;
+      }
+      MovieStats movie = fresh.computeIfAbsent(row.getString("_id"), id -> new MovieStats());
+      movie.total.add(((Number) row.get("count")).longValue());
+      ObjectId lastId = row.getObjectId("lastId");
+      if (lastId != null) {
+        movie.lastReviewMillis.set(lastId.getDate().getTime());
+      }
+    }
+
+    // Hourly buckets from the last week of reviews, dated by their ObjectId
+    long weekAgo = System.currentTimeMillis() - HOURS * HOUR_MILLIS;
+    Query recent = new Query(
+      Criteria.where("_id").gte(ObjectId.getSmallestWithDate(new Date(weekAgo))).lt(upTo)
+    );
+    recent.fields().include("imdbId");
+    try (Stream<Review> reviews = mongoTemplate.stream(recent, Review.class)) {
+      reviews.forEach(review -> {
+        MovieStats movie = review.getImdbId() == null ? null : fresh.get(review.getImdbId());
+        if (movie != null) {
+          movie.addToBucket(review.getId().getDate().getTime());
+        }
+      });
+    }
+  }
+
+  // Called once a review is stored and linked to its movie
+  public void record(String imdbId, ObjectId reviewId) {
+    long millis = reviewId != null ? reviewId.getDate().getTime() : System.currentTimeMillis();
+    // Read before stats: once the rebuild is over, stats is already the new map
+    Rebuild rebuild = rebuilding;
+    Map<String, MovieStats> current = stats;
+    MovieStats movie = count(current, imdbId, millis);
+    // A review newer than the rebuild's scan would be missing from the new counters
+    if (rebuild != null && rebuild.stats() != current &&
+      (reviewId == null || reviewId.compareTo(rebuild.upTo()) >= 0)) {
+      count(rebuild.stats(), imdbId, millis);
+    }
+
+    long hour = System.currentTimeMillis() / HOUR_MILLIS;
+    for (Leaderboard leaderboard : leaderboards.values()) {
+      leaderboard.offer(imdbId, movie.count(leaderboard.window, hour));
+    }
+  }
+
+  private static MovieStats count(Map<String, MovieStats> stats, String imdbId, long millis) {
+    MovieStats movie = stats.computeIfAbsent(imdbId, id -> new MovieStats());
+    movie.total.increment();
+    movie.lastReviewMillis.accumulateAndGet(millis, Math::max);
+    movie.addToBucket(millis);
+    return movie;
+  }
+
+  public MovieReviewStats get(String imdbId) {
+    MovieStats movie = stats.get(imdbId);
+    if (movie == null) {
+      return new MovieReviewStats(imdbId, 0, null, 0, 0);
+    }
+    long hour = System.currentTimeMillis() / HOUR_MILLIS;
+    long last = movie.lastReviewMillis.get();
+    return new MovieReviewStats(
+      imdbId,
+      movie.total.sum(),
+      last > 0 ? Instant.ofEpochMilli(last) : null,
+      movie.count(Window.DAY, hour),
+      movie.count(Window.WEEK, hour)
+    );
+  }
+
+  // The top entries of one window, most reviewed first
+  public List<Entry> top(Window window, int limit) {
+    List<Entry> entries = leaderboards.get(window).entries;
+    return entries.subList(0, Math.min(Math.max(0, limit), entries.size()));
+  }
+
+  public int getTopSize() {
+    return topSize;
+  }
+
+  // Rebuilds every leaderboard from the current counters
+  public void recompute() {
+    long hour = System.currentTimeMillis() / HOUR_MILLIS;
+    Map<String, MovieStats> current = stats;
+    for (Leaderboard leaderboard : leaderboards.values()) {
+      List<Entry> all = new ArrayList<>(current.size());
+      for (Map.Entry<String, MovieStats> movie : current.entrySet()) {
+        long count = movie.getValue().count(leaderboard.window, hour);
+        if (count > 0) {
+          all.add(new Entry(movie.getKey(), count));
+        }
+      }
+      all.sort(Entry.ORDER);
+      leaderboard.replace(all.subList(0, Math.min(topSize, all.size())));
+    }
+  }
+
+  private void recomputeQuietly() {
+    try {
+      recompute();
+    } catch (RuntimeException e) {
+      log.warn("Recomputing review leaderboards failed", e);
+    }
+  }
+
+  public enum Window {
+    DAY("24h", 24),
+    WEEK("7d", HOURS),
+    ALL("all", 0);
+
+    private final String label;
+
+    // Hourly buckets summed for this window, 0 for the all-time counter
+    private final int hours;
+
+    Window(String label, int hours) {
+      this.label = label;
+      this.hours = hours;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    public static Window fromLabel(String label) {
+      for (Window window : values()) {
+        if (window.label.equalsIgnoreCase(label)) {
+          return window;
+        }
+      }
+      throw new IllegalArgumentException(
+        "Unknown window '" + label + "', expected 24h, 7d or all"
+      );
+    }
+  }
+
+  /**
+   * One leaderboard row.
+   */
+  public record Entry(String imdbId, long reviews) {
+    static final Comparator<Entry> ORDER = Comparator
+      .comparingLong(Entry::reviews)
+      .reversed()
+      .thenComparing(Entry::imdbId);
+  }
+
+  /**
+   * Review activity of one movie. The 24h and 7d counts cover whole hours, so they
+   * may include up to an hour more than the exact window.
+   */
+  public record MovieReviewStats(
+    String imdbId,
+    long reviewCount,
+    Instant lastReviewAt,
+    long reviewsLast24h,
+    long reviewsLast7d
+  ) {}
+
+  // Counters being built and the ObjectId their scan stops at
+  private record Rebuild(Map<String, MovieStats> stats, ObjectId upTo) {}
+
+  private static final class MovieStats {
+
+    private final LongAdder total = new LongAdder();
+
+    private final AtomicLong lastReviewMillis = new AtomicLong();
+
+    private final AtomicLongArray buckets = new AtomicLongArray(HOURS);
+
+    void addToBucket(long millis) {
+      long hour = millis / HOUR_MILLIS;
+      int slot = (int) (hour % HOURS);
+      while (true) {
+        long packed = buckets.get(slot);
+        // A bucket left over from an older hour starts again from zero
+        long next = (packed >>> COUNT_BITS) == hour
+          ? packed + 1
+          : (hour << COUNT_BITS) | 1;
+        if (buckets.compareAndSet(slot, packed, next)) {
+          return;
+        }
+      }
+    }
+
+    long count(Window window, long currentHour) {
+      if (window.hours == 0) {
+        return total.sum();
+      }
+      long sum = 0;
+      for (int slot = 0; slot < HOURS; slot++) {
+        long packed = buckets.get(slot);
+        long age = currentHour - (packed >>> COUNT_BITS);
+        if (age >= 0 && age < window.hours) {
+          sum += packed & COUNT_MASK;
+        }
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * Top-k list for one window. Writers copy, change and swap the list under the
+   * lock; readers only read the volatile reference.
+   */
+  private final class Leaderboard {
+
+    private final Window window;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile List<Entry> entries = List.of();
+
+    Leaderboard(Window window) {
+      this.window = window;
+    }
+
+    void offer(String imdbId, long count) {
+      List<Entry> current = entries;
+      // Cheap pre-check without the lock: a full list whose last entry beats this one
+      if (current.size() >= topSize &&
+        current.get(current.size() - 1).reviews() >= count &&
+        current.stream().noneMatch(entry -> entry.imdbId().equals(imdbId))) {
+        return;
+      }
+      lock.lock();
+      try {
+        List<Entry> next = new ArrayList<>(entries.size() + 1);
+        long best = count;
+        for (Entry entry : entries) {
+          if (entry.imdbId().equals(imdbId)) {
+            // Counts only grow between recomputes, so a racing writer's lower count is stale
+            best = Math.max(best, entry.reviews());
+          } else {
+            next.add(entry);
+          }
+        }
+        next.add(new Entry(imdbId, best));
+        next.sort(Entry.ORDER);
+        entries = List.copyOf(next.subList(0, Math.min(topSize, next.size())));
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void replace(List<Entry> top) {
+      lock.lock();
+      try {
+        entries = List.copyOf(top);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
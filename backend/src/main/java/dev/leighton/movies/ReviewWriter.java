@@ -0,0 +1,245 @@
+package dev.leighton.movies;
+
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Persists new reviews and links them to their movies.
+ * With batching enabled, concurrent submissions are collected for up to one window
+ * (or until the batch is full) and written together: one insertMany for the reviews
+ * and one unordered bulk update for the movies. Each caller still blocks until its own
+ * review is stored and gets it back with its generated ID, along with whether a movie
+ * with its imdbId existed to link it to.
+ */
+@Component
+public class ReviewWriter implements MeterBinder {
+
+  private static final Logger log = LoggerFactory.getLogger(ReviewWriter.class);
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  // Keep only this many of the newest review references on a movie (0 keeps all of them)
+  @Value("${movies.reviews.embedded-limit:0}")
+  private int embeddedLimit;
+
+  @Value("${movies.reviews.batching.enabled:false}")
+  private boolean batchingEnabled;
+
+  @Value("${movies.reviews.batching.max-batch-size:256}")
+  private int maxBatchSize;
+
+  @Value("${movies.reviews.batching.window:5ms}")
+  private Duration window;
+
+  @Value("${movies.reviews.batching.queue-capacity:10000}")
+  private int queueCapacity;
+
+  private BlockingQueue<PendingReview> queue;
+
+  private Thread flusher;
+
+  private volatile boolean running;
+
+  @PostConstruct
+  void start() {
+    if (!batchingEnabled) {
+      return;
+    }
+    queue = new ArrayBlockingQueue<>(queueCapacity);
+    running = true;
+    flusher = new Thread(this::runFlusher, "review-writer");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    if (flusher == null) {
+      return;
+    }
+    running = false;
+    flusher.interrupt();
+    flusher.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    // Reviews waiting for the flusher; always 0 with batching off
+    Gauge.builder("movies.reviews.queue.size", this, writer ->
+      writer.queue != null ? writer.queue.size() : 0
+    )
+      .description("Reviews waiting to be written in the next batch")
+      .register(registry);
+  }
+
+  public Written write(Review review, String imdbId) {
+    PendingReview pending = new PendingReview(
+      review,
+      imdbId,
+      new CompletableFuture<>()
+    );
+    // Write straight away when batching is off or the queue is full
+    if (!batchingEnabled || !running || !queue.offer(pending)) {
+      flush(List.of(pending));
+    } else if (!running && queue.remove(pending)) {
+      // Shutdown began after the check above and the flusher may have done its last
+      // drain already; only the flusher takes from the queue, so if the review is
+      // still there nobody else will write it
+      flush(List.of(pending));
+    }
+    try {
+      return pending.result().join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private void runFlusher() {
+    List<PendingReview> batch = new ArrayList<>(maxBatchSize);
+    while (running) {
+      try {
+        // Block for the first review, then keep collecting until the window closes
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + window.toNanos();
+        while (batch.size() < maxBatchSize) {
+          queue.drainTo(batch, maxBatchSize - batch.size());
+          long remaining = deadline - System.nanoTime();
+          if (batch.size() >= maxBatchSize || remaining <= 0) {
+            break;
+          }
+          PendingReview next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        running = false;
+      }
+      if (!batch.isEmpty()) {
+        flush(batch);
+        batch = new ArrayList<>(maxBatchSize);
+      }
+    }
+
+    // Shutting down: write out everything still waiting
+    List<PendingReview> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    if (!remaining.isEmpty()) {
+      flush(remaining);
+    }
+  }
+
+  private void flush(List<PendingReview> batch) {
+    try {
+      List<Review> reviews = new ArrayList<>(batch.size());
+      for (PendingReview pending : batch) {
+        reviews.add(pending.review());
+      }
+      // One insertMany; the driver assigns the IDs on the review objects
+      mongoTemplate.insert(reviews, Review.class);
+
+      // Group the new IDs per movie, keeping submission order
+      Map<String, List<ObjectId>> idsByMovie = new LinkedHashMap<>();
+      for (PendingReview pending : batch) {
+        idsByMovie
+          .computeIfAbsent(pending.imdbId(), key -> new ArrayList<>())
+          .add(pending.review().getId());
+      }
+
+      // One round trip for all movie updates in the batch
+      BulkOperations bulk = mongoTemplate.bulkOps(
+        BulkOperations.BulkMode.UNORDERED,
+        Movie.class
+      );
+      for (Map.Entry<String, List<ObjectId>> entry : idsByMovie.entrySet()) {
+        bulk.updateOne(
+          new Query(Criteria.where("imdbId").is(entry.getKey())),
+          appendReviews(entry.getValue())
+        );
+      }
+      BulkWriteResult result = bulk.execute();
+      Set<String> linked = linkedMovies(idsByMovie.keySet(), result);
+
+      for (PendingReview pending : batch) {
+        pending.result().complete(
+          new Written(pending.review(), linked.contains(pending.imdbId()))
+        );
+      }
+    } catch (RuntimeException e) {
+      log.error("Failed to write a batch of {} reviews", batch.size(), e);
+      for (PendingReview pending : batch) {
+        pending.result().completeExceptionally(e);
+      }
+    }
+  }
+
+  // The imdbIds whose movie update matched a document
+  private Set<String> linkedMovies(Set<String> imdbIds, BulkWriteResult result) {
+    if (result.getMatchedCount() == imdbIds.size()) {
+      return imdbIds;
+    }
+    // Some IDs named no movie; the bulk result only has totals, so look up which
+    Query query = new Query(Criteria.where("imdbId").in(imdbIds));
+    query.fields().include("imdbId");
+    Set<String> found = new HashSet<>();
+    for (Movie movie : mongoTemplate.find(query, Movie.class)) {
+      found.add(movie.getImdbId());
+    }
+    return found;
+  }
+
+  private Update appendReviews(List<ObjectId> ids) {
+    Update update = new Update().inc("reviewCount", ids.size());
+    if (embeddedLimit > 0) {
+      // $slice with a negative size keeps the last N entries, so the array stays bounded
+      update.push("reviewIds").slice(-embeddedLimit).each(ids.toArray());
+    } else {
+      update.push("reviewIds").each(ids.toArray());
+    }
+    return update;
+  }
+
+  /**
+   * A stored review, and whether a movie was found to reference it.
+   */
+  public record Written(Review review, boolean linked) {}
+
+  private record PendingReview(
+    Review review,
+    String imdbId,
+    CompletableFuture<Written> result
+  ) {}
+}
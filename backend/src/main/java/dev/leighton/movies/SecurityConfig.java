@@ -1,12 +1,29 @@
 package dev.leighton.movies;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
@@ -14,16 +31,20 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.savedrequest.NullRequestCache;
+import org.springframework.session.web.http.SessionRepositoryFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -33,12 +54,45 @@ import org.springframework.web.filter.OncePerRequestFilter;
 @EnableWebSecurity
 public class SecurityConfig {
 
+  private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
   @Autowired
   private CustomUserDetailsService userDetailsService;
 
+  @Autowired
+  private RequestDiagnostics diagnostics;
+
+  @Autowired
+  private TokenService tokenService;
+
+  @Autowired
+  private ObjectProvider<MeterRegistry> meterRegistry;
+
+  @Autowired
+  private RateLimiter rateLimiter;
+
+  @Autowired
+  private RateLimitProperties rateLimitProperties;
+
   @Value("${FRONTEND_URL}")
   private String frontendUrl;
 
+  // BCrypt work factor (log2 rounds) used for new and rehashed passwords
+  @Value("${movies.auth.bcrypt-strength:10}")
+  private int bcryptStrength;
+
+  // "session" keeps the server-side HttpSession login, "token" switches to stateless signed tokens
+  @Value("${movies.auth.mode:session}")
+  private String authMode;
+
+  // Users allowed to call /api/v1/admin/** and the operational endpoints; nobody when empty
+  @Value("${movies.admin.usernames:}")
+  private List<String> adminUsernames;
+
+  private boolean isTokenMode() {
+    return "token".equalsIgnoreCase(authMode);
+  }
+
   @Bean
   public SecurityFilterChain securityFilterChain(HttpSecurity http)
     throws Exception {
@@ -49,15 +103,45 @@ public class SecurityConfig {
         auth
           .requestMatchers("/api/auth/**", "/health")
           .permitAll()
+          // Scrape endpoints for the metrics system, only served on the private
+          // management port (management.server.port)
+          .requestMatchers("/actuator/health", "/actuator/prometheus")
+          .permitAll()
           .requestMatchers(HttpMethod.OPTIONS, "/**")
           .permitAll()
+          // Streaming responses finish on an async dispatch of a request that was already authorized,
+          // and error pages render a status (such as a 403) that was already decided
+          .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR)
+          .permitAll()
+          // Traces, cache and invalidation stats describe other users' traffic
+          .requestMatchers(
+            "/api/v1/admin/**",
+            "/api/v1/diagnostics/**",
+            "/api/v1/cache/stats"
+          )
+          .access((authentication, context) ->
+            new AuthorizationDecision(
+              !(authentication.get() instanceof AnonymousAuthenticationToken) &&
+              adminUsernames.contains(authentication.get().getName())
+            )
+          )
           .anyRequest()
           .authenticated()
       )
       .sessionManagement(session -> {
-        session.sessionCreationPolicy(SessionCreationPolicy.ALWAYS);
-        session.sessionFixation().changeSessionId();
+        if (isTokenMode()) {
+          // Never create or read an HttpSession; every request carries its own token
+          session.sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+        } else {
+          // Sessions start at login; anonymous requests and health probes never
+          // create one, which with the Mongo store would be a write per request
+          session.sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED);
+          session.sessionFixation().changeSessionId();
+        }
       })
+      // Nothing redirects back after login, so don't open a session to save a
+      // rejected request for it
+      .requestCache(cache -> cache.requestCache(new NullRequestCache()))
       .exceptionHandling(e ->
         e.authenticationEntryPoint(
           new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)
@@ -71,10 +155,24 @@ public class SecurityConfig {
             response.setHeader("Access-Control-Allow-Origin", frontendUrl);
             response.setHeader("Access-Control-Allow-Credentials", "true");
 
+            if (isTokenMode()) {
+              // Hand the client a signed token instead of a session cookie
+              response.setStatus(HttpStatus.OK.value());
+              response.setContentType("application/json");
+              response
+                .getWriter()
+                .write(
+                  String.format(
+                    "{\"message\": \"Login successful\", \"token\": \"%s\", \"expiresIn\": %d}",
+                    tokenService.issue(authentication.getName()),
+                    tokenService.getTtl().toSeconds()
+                  )
+                );
+              return;
+            }
+
             // Log session ID for debugging
-            System.out.println(
-              "Login successful, Session ID: " + request.getSession().getId()
-            );
+            log.debug("Login successful, Session ID: {}", request.getSession().getId());
 
             // Explicitly set the session cookie with appropriate attributes
             // Add SameSite=None via header since standard Cookie class doesn't support it
@@ -119,6 +217,14 @@ public class SecurityConfig {
           .permitAll()
       );
 
+    if (isTokenMode()) {
+      // Tokens are checked before the form login filter so it never sees them
+      http.addFilterBefore(
+        new TokenAuthenticationFilter(tokenService),
+        UsernamePasswordAuthenticationFilter.class
+      );
+    }
+
     return http.build();
   }
 
@@ -162,75 +268,155 @@ public class SecurityConfig {
   public FilterRegistrationBean<CookieSameSiteFilter> cookieSameSiteFilter() {
     FilterRegistrationBean<CookieSameSiteFilter> registration =
       new FilterRegistrationBean<>();
-    registration.setFilter(new CookieSameSiteFilter());
+    registration.setFilter(
+      new CookieSameSiteFilter(diagnostics)
+    );
+    registration.addUrlPatterns("/*");
+    // After Spring Session's filter (when the shared store is on), so getSession()
+    // here returns the same session the rest of the request sees
+    registration.setOrder(SessionRepositoryFilter.DEFAULT_ORDER + 2);
+    return registration;
+  }
+
+  @Bean
+  public FilterRegistrationBean<RateLimitFilter> rateLimitFilter() {
+    FilterRegistrationBean<RateLimitFilter> registration =
+      new FilterRegistrationBean<>();
+    registration.setFilter(
+      new RateLimitFilter(rateLimiter, rateLimitProperties, tokenService, frontendUrl)
+    );
     registration.addUrlPatterns("/*");
-    registration.setOrder(Integer.MIN_VALUE);
+    // Ahead of Spring Security, so a rejected login never reaches BCrypt
+    registration.setOrder(SessionRepositoryFilter.DEFAULT_ORDER + 1);
     return registration;
   }
 
   public static class CookieSameSiteFilter extends OncePerRequestFilter {
 
+    private final RequestDiagnostics diagnostics;
+
+    public CookieSameSiteFilter(RequestDiagnostics diagnostics) {
+      this.diagnostics = diagnostics;
+    }
+
     @Override
     protected void doFilterInternal(
       HttpServletRequest request,
       HttpServletResponse response,
       FilterChain filterChain
     ) throws ServletException, IOException {
-      // Store the session ID before proceeding
-      String sessionId = request.getSession().getId();
-      boolean isNewSession = request.getSession().isNew();
+      // Store the session ID before proceeding; only an existing session counts
+      HttpSession session = request.getSession(false);
+      String sessionId = session != null ? session.getId() : null;
+      boolean isNewSession = session != null && session.isNew();
 
-      System.out.println("=== Filter for: " + request.getRequestURI() + " ===");
-      System.out.println("Session ID: " + sessionId);
-      System.out.println("Is new session: " + isNewSession);
+      // Only sampled requests pay for copying headers and cookies
+      boolean sampled = diagnostics.shouldSample(request.getRequestURI());
+      long start = sampled ? System.nanoTime() : 0;
 
-      // Print incoming cookies
-      Cookie[] cookies = request.getCookies();
-      if (cookies != null) {
-        System.out.println("Incoming cookies:");
-        for (Cookie cookie : cookies) {
-          System.out.println(
-            "  " + cookie.getName() + ": " + cookie.getValue()
+      // Force set JSESSIONID cookie before filter chain
+      if (sessionId != null) {
+        response.addHeader(
+          "Set-Cookie",
+          String.format(
+            "JSESSIONID=%s; Path=/; Domain=.fly.dev; HttpOnly; SameSite=None; Secure",
+            sessionId
+          )
+        );
+      }
+
+      try {
+        // Continue with the filter chain
+        filterChain.doFilter(request, response);
+      } finally {
+        if (sampled) {
+          diagnostics.record(
+            new RequestTrace(
+              Instant.now(),
+              request.getMethod(),
+              request.getRequestURI(),
+              response.getStatus(),
+              (System.nanoTime() - start) / 1000,
+              sessionId != null ? hash(sessionId) : null,
+              isNewSession,
+              headers(request),
+              cookieNames(request)
+            )
           );
         }
-      } else {
-        System.out.println("No cookies received");
       }
 
-      // Force set JSESSIONID cookie before filter chain
-      response.addHeader(
-        "Set-Cookie",
-        String.format(
-          "JSESSIONID=%s; Path=/; Domain=.fly.dev; HttpOnly; SameSite=None; Secure",
-          sessionId
-        )
-      );
+      // Force set JSESSIONID cookie after filter chain as well
+      if (sessionId != null) {
+        response.addHeader(
+          "Set-Cookie",
+          String.format(
+            "JSESSIONID=%s; Path=/; Domain=.fly.dev; HttpOnly; SameSite=None; Secure",
+            sessionId
+          )
+        );
+      }
+    }
 
-      // Continue with the filter chain
-      filterChain.doFilter(request, response);
+    // First 12 hex digits of the SHA-256, so a trace never holds a usable session ID
+    private static String hash(String sessionId) {
+      try {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+          sessionId.getBytes(StandardCharsets.UTF_8)
+        );
+        return HexFormat.of().formatHex(digest, 0, 6);
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+    }
 
-      // Force set JSESSIONID cookie after filter chain as well
-      response.addHeader(
-        "Set-Cookie",
-        String.format(
-          "JSESSIONID=%s; Path=/; Domain=.fly.dev; HttpOnly; SameSite=None; Secure",
-          sessionId
-        )
-      );
+    private static Map<String, String> headers(HttpServletRequest request) {
+      Map<String, String> headers = new LinkedHashMap<>();
+      for (String name : Collections.list(request.getHeaderNames())) {
+        // Never keep credentials in the trace buffer
+        boolean secret =
+          name.equalsIgnoreCase("cookie") || name.equalsIgnoreCase("authorization");
+        headers.put(name, secret ? "<redacted>" : request.getHeader(name));
+      }
+      return headers;
+    }
 
-      System.out.println("Added JSESSIONID cookie to response: " + sessionId);
+    private static List<String> cookieNames(HttpServletRequest request) {
+      List<String> names = new ArrayList<>();
+      Cookie[] cookies = request.getCookies();
+      if (cookies != null) {
+        for (Cookie cookie : cookies) {
+          names.add(cookie.getName());
+        }
+      }
+      return names;
     }
   }
 
   @Bean
   public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+    // Stored hashes with a different cost are rehashed on the next successful login
+    AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(
+      bcryptStrength
+    );
+    MeterRegistry registry = meterRegistry.getIfAvailable();
+    if (registry != null) {
+      encoder.setVerifyTimer(
+        Timer.builder("movies.auth.password.verify")
+          .description("BCrypt password checks")
+          .tag("cost", String.valueOf(bcryptStrength))
+          .publishPercentileHistogram()
+          .register(registry)
+      );
+    }
+    return encoder;
   }
 
   @Bean
   public DaoAuthenticationProvider authenticationProvider() {
     DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
     provider.setUserDetailsService(userDetailsService);
+    provider.setUserDetailsPasswordService(userDetailsService);
     provider.setPasswordEncoder(passwordEncoder());
     return provider;
   }
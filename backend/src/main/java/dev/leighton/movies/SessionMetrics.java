@@ -0,0 +1,59 @@
+package dev.leighton.movies;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts HTTP sessions as they are created and destroyed. With the shared Mongo
+ * store, expired sessions are removed by a TTL index without any event, so the
+ * active gauge counts the live sessions in the store instead.
+ */
+@Component
+public class SessionMetrics implements HttpSessionListener {
+
+  private final Counter created;
+
+  private final Counter destroyed;
+
+  private final AtomicInteger active = new AtomicInteger();
+
+  public SessionMetrics(
+    MeterRegistry registry,
+    ObjectProvider<MongoSessionRepository> sessionRepository
+  ) {
+    this.created = Counter.builder("movies.sessions.started")
+      .description("HTTP sessions started")
+      .register(registry);
+    this.destroyed = Counter.builder("movies.sessions.destroyed")
+      .description("HTTP sessions invalidated or expired")
+      .register(registry);
+    MongoSessionRepository shared = sessionRepository.getIfAvailable();
+    if (shared != null) {
+      Gauge.builder("movies.sessions.active", shared, MongoSessionRepository::countActive)
+        .description("HTTP sessions currently alive in the shared store")
+        .register(registry);
+    } else {
+      Gauge.builder("movies.sessions.active", active, AtomicInteger::get)
+        .description("HTTP sessions currently alive on this instance")
+        .register(registry);
+    }
+  }
+
+  @Override
+  public void sessionCreated(HttpSessionEvent event) {
+    created.increment();
+    active.incrementAndGet();
+  }
+
+  @Override
+  public void sessionDestroyed(HttpSessionEvent event) {
+    destroyed.increment();
+    active.decrementAndGet();
+  }
+}
@@ -0,0 +1,58 @@
+package dev.leighton.movies;
+
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.session.DefaultCookieSerializerCustomizer;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+
+/**
+ * Replaces Tomcat's in-memory sessions with the shared Mongo session store when
+ * movies.session.store=mongo. With any other value nothing here is created and
+ * sessions stay local to each instance.
+ */
+@Configuration
+@EnableSpringHttpSession
+@ConditionalOnProperty(name = "movies.session.store", havingValue = "mongo")
+public class SessionStoreConfig {
+
+  @Bean
+  public MongoSessionRepository sessionRepository(
+    MongoTemplate mongoTemplate,
+    ApplicationEventPublisher eventPublisher,
+    InvalidationBus invalidationBus,
+    @Value("${movies.session.collection:sessions}") String collection,
+    @Value("${server.servlet.session.timeout:30m}") Duration timeout,
+    @Value("${movies.session.touch-interval:1m}") Duration touchInterval,
+    @Value("${movies.session.near-cache.max-size:10000}") long nearCacheSize,
+    @Value("${movies.session.near-cache.ttl:10s}") Duration nearCacheTtl
+  ) {
+    MongoSessionRepository repository = new MongoSessionRepository(
+      mongoTemplate,
+      collection,
+      timeout,
+      touchInterval,
+      nearCacheSize,
+      nearCacheTtl
+    );
+    // Lets SessionMetrics keep counting sessions created through the shared store
+    repository.setApplicationEventPublisher(eventPublisher);
+    // Logouts and session changes reach the other instances' near caches
+    repository.setInvalidationBus(invalidationBus);
+    return repository;
+  }
+
+  @Bean
+  public DefaultCookieSerializerCustomizer sessionCookieCustomizer() {
+    // Keep the cookie the frontend and CookieSameSiteFilter already use: same name,
+    // and the raw session ID rather than Spring Session's Base64 form
+    return serializer -> {
+      serializer.setCookieName("JSESSIONID");
+      serializer.setUseBase64Encoding(false);
+    };
+  }
+}
@@ -0,0 +1,26 @@
+package dev.leighton.movies;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Beans that must be created at startup even with spring.main.lazy-initialization
+ * (the fast-startup profile). The invalidation bus subscribes to its transport and
+ * registers its handlers when it is created, so left lazy an instance would miss
+ * other instances' writes until something on this one published.
+ * Filters, servlet listeners, runners and @EventListener methods need nothing here:
+ * Spring creates those when it registers or calls them.
+ */
+@Configuration
+public class StartupConfig {
+
+  @Bean
+  static LazyInitializationExcludeFilter eagerBeans() {
+    return LazyInitializationExcludeFilter.forBeanTypes(
+      InvalidationBus.class,
+      InvalidationSubscribers.class,
+      InvalidationTransport.class
+    );
+  }
+}
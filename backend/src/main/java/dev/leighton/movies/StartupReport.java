@@ -0,0 +1,139 @@
+package dev.leighton.movies;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.support.ServletRequestHandledEvent;
+
+/**
+ * Logs where startup time went: JVM start to ready, each top-level phase, and the
+ * beans that took longest to create (their own time, without the dependencies they
+ * created). The phases and beans need MoviesApplication's BufferingApplicationStartup
+ * and are skipped when the application is started some other way. Also logs when the
+ * first request completed, which is what a cold start on a scaled-to-zero instance
+ * costs the user who woke it.
+ */
+@Component
+public class StartupReport {
+
+  private static final Logger log = LoggerFactory.getLogger(StartupReport.class);
+
+  private static final String BEAN_STEP = "spring.beans.instantiate";
+
+  @Autowired
+  private ConfigurableApplicationContext context;
+
+  @Value("${movies.startup.report.enabled:true}")
+  private boolean enabled;
+
+  @Value("${movies.startup.report.top-beans:15}")
+  private int topBeans;
+
+  private final AtomicBoolean firstRequestSeen = new AtomicBoolean();
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void report(ApplicationReadyEvent event) {
+    if (!enabled) {
+      return;
+    }
+    StringBuilder report = new StringBuilder("Startup report:");
+    report
+      .append("\n  JVM start to ready: ")
+      .append(ManagementFactory.getRuntimeMXBean().getUptime())
+      .append(" ms (application ")
+      .append(event.getTimeTaken().toMillis())
+      .append(" ms)");
+
+    if (context.getApplicationStartup() instanceof BufferingApplicationStartup buffering) {
+      // Draining hands the steps over and frees the buffer
+      StartupTimeline timeline = buffering.drainBufferedTimeline();
+      appendPhases(report, timeline);
+      appendBeans(report, timeline);
+    }
+    log.info("{}", report);
+  }
+
+  @EventListener
+  public void onRequestHandled(ServletRequestHandledEvent event) {
+    if (!enabled || !firstRequestSeen.compareAndSet(false, true)) {
+      return;
+    }
+    log.info(
+      "First request ({} {}) completed {} ms after JVM start, in {} ms",
+      event.getMethod(),
+      event.getRequestUrl(),
+      ManagementFactory.getRuntimeMXBean().getUptime(),
+      event.getProcessingTimeMillis()
+    );
+  }
+
+  private void appendPhases(StringBuilder report, StartupTimeline timeline) {
+    report.append("\n  Phases:");
+    for (StartupTimeline.TimelineEvent event : timeline.getEvents()) {
+      if (event.getStartupStep().getParentId() == null) {
+        report
+          .append("\n    ")
+          .append(event.getStartupStep().getName())
+          .append(": ")
+          .append(event.getDuration().toMillis())
+          .append(" ms");
+      }
+    }
+  }
+
+  private void appendBeans(StringBuilder report, StartupTimeline timeline) {
+    // A bean's own time is its duration minus that of the steps nested directly in it
+    Map<Long, Long> selfNanos = new HashMap<>();
+    Map<Long, String> beanNames = new HashMap<>();
+    for (StartupTimeline.TimelineEvent event : timeline.getEvents()) {
+      StartupStep step = event.getStartupStep();
+      selfNanos.merge(step.getId(), event.getDuration().toNanos(), Long::sum);
+      if (step.getParentId() != null) {
+        selfNanos.merge(step.getParentId(), -event.getDuration().toNanos(), Long::sum);
+      }
+      if (BEAN_STEP.equals(step.getName())) {
+        for (StartupStep.Tag tag : step.getTags()) {
+          if ("beanName".equals(tag.getKey())) {
+            beanNames.put(step.getId(), tag.getValue());
+          }
+        }
+      }
+    }
+
+    List<Map.Entry<Long, String>> beans = new ArrayList<>(beanNames.entrySet());
+    beans.sort((a, b) -> Long.compare(selfNanos.get(b.getKey()), selfNanos.get(a.getKey())));
+    long totalNanos = 0;
+    for (Map.Entry<Long, String> bean : beans) {
+      totalNanos += selfNanos.get(bean.getKey());
+    }
+    report
+      .append("\n  Beans: ")
+      .append(beans.size())
+      .append(" created in ")
+      .append(Duration.ofNanos(totalNanos).toMillis())
+      .append(" ms, slowest:");
+    for (Map.Entry<Long, String> bean : beans.subList(0, Math.min(topBeans, beans.size()))) {
+      report
+        .append("\n    ")
+        .append(bean.getValue())
+        .append(": ")
+        .append(Duration.ofNanos(selfNanos.get(bean.getKey())).toMillis())
+        .append(" ms");
+    }
+  }
+}
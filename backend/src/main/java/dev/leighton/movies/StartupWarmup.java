@@ -0,0 +1,86 @@
+package dev.leighton.movies;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finishes startup work in the background once the application is serving.
+ * First it opens a pooled Mongo connection with a ping, so the first request doesn't
+ * pay for the TCP, TLS and auth handshake. Then, when beans are lazy (the
+ * fast-startup profile), it creates the ones nothing has asked for yet, so most of
+ * them exist before the requests that need them arrive. Requests that get there
+ * first create what they need themselves; Spring makes that safe to race.
+ */
+@Component
+public class StartupWarmup {
+
+  private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+  @Autowired
+  private ConfigurableListableBeanFactory beanFactory;
+
+  @Value("${movies.startup.warmup.enabled:true}")
+  private boolean enabled;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    Thread thread = new Thread(this::warmUp, "startup-warmup");
+    thread.setDaemon(true);
+    // Behind request threads, which are what the user is waiting for
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  private void warmUp() {
+    long start = System.nanoTime();
+    try {
+      beanFactory.getBean(MongoTemplate.class).executeCommand(new Document("ping", 1));
+      log.info(
+        "Mongo connection warmed up in {} ms",
+        (System.nanoTime() - start) / 1_000_000
+      );
+    } catch (RuntimeException e) {
+      // Not fatal: the first query connects instead
+      log.warn("Mongo warm-up ping failed: {}", e.getMessage());
+    }
+
+    long beansStart = System.nanoTime();
+    int created = 0;
+    for (String name : beanFactory.getBeanDefinitionNames()) {
+      BeanDefinition definition = beanFactory.getBeanDefinition(name);
+      if (
+        definition.isAbstract() ||
+        !definition.isSingleton() ||
+        beanFactory.containsSingleton(name)
+      ) {
+        continue;
+      }
+      try {
+        beanFactory.getBean(name);
+        created++;
+      } catch (BeansException e) {
+        log.debug("Warm-up could not create bean {}: {}", name, e.getMessage());
+      }
+    }
+    if (created > 0) {
+      log.info(
+        "Created {} lazy beans in the background in {} ms",
+        created,
+        (System.nanoTime() - beansStart) / 1_000_000
+      );
+    }
+  }
+}
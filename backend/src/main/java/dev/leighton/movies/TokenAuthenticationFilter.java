@@ -0,0 +1,55 @@
+package dev.leighton.movies;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Optional;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Authenticates requests carrying an "Authorization: Bearer <token>" header
+ * issued by TokenService. Used only in the stateless auth mode.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+  private static final String PREFIX = "Bearer ";
+
+  private final TokenService tokenService;
+
+  public TokenAuthenticationFilter(TokenService tokenService) {
+    this.tokenService = tokenService;
+  }
+
+  @Override
+  protected void doFilterInternal(
+    HttpServletRequest request,
+    HttpServletResponse response,
+    FilterChain filterChain
+  ) throws ServletException, IOException {
+    String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+    if (header != null && header.startsWith(PREFIX)) {
+      Optional<String> username = tokenService.verify(header.substring(PREFIX.length()));
+      if (username.isPresent()) {
+        // The token is proof enough; no UserDetails lookup on this path
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(
+          new UsernamePasswordAuthenticationToken(
+            username.get(),
+            null,
+            Collections.emptyList()
+          )
+        );
+        SecurityContextHolder.setContext(context);
+      }
+    }
+
+    filterChain.doFilter(request, response);
+  }
+}
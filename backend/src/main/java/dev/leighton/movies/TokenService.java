@@ -0,0 +1,101 @@
+package dev.leighton.movies;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Issues and verifies the compact signed tokens used by the stateless auth mode.
+ * A token is base64url(username|expiry) + "." + base64url(HMAC-SHA256 of that payload),
+ * so verifying one needs no session lookup and no database access.
+ */
+@Service
+public class TokenService {
+
+  private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+
+  private static final String ALGORITHM = "HmacSHA256";
+
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  private final Mac prototype;
+
+  private final Duration ttl;
+
+  public TokenService(
+    @Value("${movies.auth.token-secret:}") String secret,
+    @Value("${movies.auth.token-ttl:12h}") Duration ttl
+  ) throws GeneralSecurityException {
+    byte[] key;
+    if (secret == null || secret.isBlank()) {
+      // Tokens from a random key only work on this instance and until it restarts
+      log.warn("movies.auth.token-secret is not set, using a random per-process key");
+      key = new byte[32];
+      new SecureRandom().nextBytes(key);
+    } else {
+      key = secret.getBytes(StandardCharsets.UTF_8);
+    }
+    this.prototype = Mac.getInstance(ALGORITHM);
+    this.prototype.init(new SecretKeySpec(key, ALGORITHM));
+    this.ttl = ttl;
+  }
+
+  public Duration getTtl() {
+    return ttl;
+  }
+
+  public String issue(String username) {
+    long expiry = Instant.now().plus(ttl).getEpochSecond();
+    byte[] payload = (username + "|" + expiry).getBytes(StandardCharsets.UTF_8);
+    return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+  }
+
+  public Optional<String> verify(String token) {
+    int dot = token.indexOf('.');
+    if (dot <= 0) {
+      return Optional.empty();
+    }
+    try {
+      byte[] payload = DECODER.decode(token.substring(0, dot));
+      byte[] signature = DECODER.decode(token.substring(dot + 1));
+      // Constant-time comparison so the signature can't be guessed byte by byte
+      if (!MessageDigest.isEqual(sign(payload), signature)) {
+        return Optional.empty();
+      }
+
+      String claims = new String(payload, StandardCharsets.UTF_8);
+      int separator = claims.lastIndexOf('|');
+      long expiry = Long.parseLong(claims.substring(separator + 1));
+      if (Instant.now().getEpochSecond() >= expiry) {
+        return Optional.empty();
+      }
+      return Optional.of(claims.substring(0, separator));
+    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+      // Malformed Base64 or payload; NumberFormatException is an IllegalArgumentException
+      return Optional.empty();
+    }
+  }
+
+  private byte[] sign(byte[] payload) {
+    try {
+      // Cloning an initialised Mac is much cheaper than creating and keying a new one
+      Mac mac = (Mac) prototype.clone();
+      return mac.doFinal(payload);
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(ALGORITHM + " does not support cloning", e);
+    }
+  }
+}
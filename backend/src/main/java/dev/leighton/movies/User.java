@@ -1,6 +1,7 @@
 package dev.leighton.movies;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "users")
@@ -9,6 +10,8 @@ public class User {
   @Id
   private String id;
 
+  // Unique, so concurrent registrations of the same name can't both succeed
+  @Indexed(unique = true)
   private String username;
 
   private String password; // (stored hashed)
@@ -0,0 +1,287 @@
+package dev.leighton.movies;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bloom filter of every registered username, so logins for names that were never
+ * registered (typical of credential stuffing) are rejected without a Mongo query.
+ * "Absent" is definite; "present" may be a false positive and falls through to the
+ * database. Until the first build finishes every name counts as present.
+ *
+ * The filter is built from one scan of the users collection at startup and rebuilt
+ * (and resized) now and then. New users are added on register, and a short periodic
+ * refresh picks up users registered on other instances. Bits live in an
+ * AtomicLongArray, so adds and lookups never lock.
+ */
+@Component
+public class UsernameFilter {
+
+  private static final Logger log = LoggerFactory.getLogger(UsernameFilter.class);
+
+  // Users registered this long before the newest one seen are re-read on refresh,
+  // to cover ObjectIds from instances with slightly skewed clocks
+  private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Value("${movies.auth.username-filter.enabled:true}")
+  private boolean enabled;
+
+  @Value("${movies.auth.username-filter.expected-users:100000}")
+  private long expectedUsers;
+
+  @Value("${movies.auth.username-filter.false-positive-rate:0.01}")
+  private double falsePositiveRate;
+
+  @Value("${movies.auth.username-filter.refresh-interval:10s}")
+  private Duration refreshInterval;
+
+  @Value("${movies.auth.username-filter.rebuild-interval:6h}")
+  private Duration rebuildInterval;
+
+  // Null until the first build completes
+  private volatile Bits current;
+
+  // The filter being built, so names added meanwhile end up in it too
+  private volatile Bits building;
+
+  // Creation time of the newest user read so far, for incremental refreshes
+  private volatile long newestSeconds;
+
+  private ScheduledExecutorService scheduler;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    rebuild();
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "username-filter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(
+      this::refreshQuietly,
+      refreshInterval.toMillis(),
+      refreshInterval.toMillis(),
+      TimeUnit.MILLISECONDS
+    );
+    scheduler.scheduleWithFixedDelay(
+      this::rebuildQuietly,
+      rebuildInterval.toMillis(),
+      rebuildInterval.toMillis(),
+      TimeUnit.MILLISECONDS
+    );
+  }
+
+  @PreDestroy
+  void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  public boolean mightContain(String username) {
+    Bits bits = current;
+    return bits == null || bits.mightContain(username);
+  }
+
+  public void add(String username) {
+    Bits bits = current;
+    if (bits != null) {
+      bits.add(username);
+    }
+    Bits next = building;
+    if (next != null) {
+      next.add(username);
+    }
+  }
+
+  public void rebuild() {
+    long start = System.nanoTime();
+    long count = mongoTemplate.getCollection("users").estimatedDocumentCount();
+    // Leave room to grow until the next rebuild
+    Bits bits = new Bits(Math.max(expectedUsers, count * 2), falsePositiveRate);
+    building = bits;
+    try {
+      long newest = scan(bits, new Query());
+      current = bits;
+      newestSeconds = newest;
+    } finally {
+      building = null;
+    }
+    log.info(
+      "Built username filter from {} users in {} ms: {}",
+      bits.insertions.get(),
+      (System.nanoTime() - start) / 1_000_000,
+      stats()
+    );
+  }
+
+  // Adds users created since the last scan, including ones registered on other instances
+  public void refresh() {
+    Bits bits = current;
+    if (bits == null) {
+      return;
+    }
+    ObjectId since = ObjectId.getSmallestWithDate(
+      new Date((newestSeconds - REFRESH_OVERLAP.toSeconds()) * 1000)
+    );
+    long newest = scan(bits, new Query(Criteria.where("_id").gte(since)));
+    if (newest > newestSeconds) {
+      newestSeconds = newest;
+    }
+  }
+
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    Bits bits = current;
+    stats.put("ready", bits != null);
+    if (bits != null) {
+      stats.put("bits", bits.size);
+      stats.put("hashes", bits.hashes);
+      stats.put("insertions", bits.insertions.get());
+      stats.put("expectedFalsePositiveRate", bits.expectedFalsePositiveRate());
+    }
+    return stats;
+  }
+
+  // Adds every matching username to bits; returns the newest creation time seen (epoch seconds)
+  private long scan(Bits bits, Query query) {
+    query.fields().include("username");
+    query.with(Sort.by(Sort.Direction.ASC, "_id"));
+    long newest = newestSeconds;
+    try (Stream<User> users = mongoTemplate.stream(query, User.class)) {
+      for (User user : (Iterable<User>) users::iterator) {
+        if (user.getUsername() != null) {
+          bits.add(user.getUsername());
+        }
+        if (user.getId() != null && ObjectId.isValid(user.getId())) {
+          newest = Math.max(newest, new ObjectId(user.getId()).getTimestamp());
+        }
+      }
+    }
+    return newest;
+  }
+
+  private void refreshQuietly() {
+    try {
+      refresh();
+    } catch (RuntimeException e) {
+      log.warn("Username filter refresh failed", e);
+    }
+  }
+
+  private void rebuildQuietly() {
+    try {
+      rebuild();
+    } catch (RuntimeException e) {
+      log.warn("Username filter rebuild failed, keeping the previous one", e);
+    }
+  }
+
+  /**
+   * Bit array plus hash count, sized for an expected number of insertions and
+   * false-positive rate. Uses double hashing over one 64-bit hash of the name.
+   */
+  private static final class Bits {
+
+    private final AtomicLongArray words;
+
+    private final long size;
+
+    private final int hashes;
+
+    // Names that set at least one new bit; a close estimate of distinct names added
+    private final AtomicLong insertions = new AtomicLong();
+
+    Bits(long expected, double falsePositiveRate) {
+      double ln2 = Math.log(2);
+      long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (ln2 * ln2));
+      int words = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+      this.words = new AtomicLongArray(words);
+      this.size = (long) words * 64;
+      this.hashes = Math.max(1, (int) Math.round((double) size / expected * ln2));
+    }
+
+    void add(String username) {
+      long hash = hash(username);
+      long h1 = (int) hash;
+      long h2 = (int) (hash >>> 32);
+      boolean changed = false;
+      for (int i = 1; i <= hashes; i++) {
+        long bit = index(h1 + i * h2);
+        long mask = 1L << bit;
+        int word = (int) (bit >>> 6);
+        if ((words.get(word) & mask) == 0) {
+          words.getAndAccumulate(word, mask, (a, b) -> a | b);
+          changed = true;
+        }
+      }
+      if (changed) {
+        insertions.incrementAndGet();
+      }
+    }
+
+    boolean mightContain(String username) {
+      long hash = hash(username);
+      long h1 = (int) hash;
+      long h2 = (int) (hash >>> 32);
+      for (int i = 1; i <= hashes; i++) {
+        long bit = index(h1 + i * h2);
+        if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    double expectedFalsePositiveRate() {
+      double filled = 1 - Math.exp(-(double) hashes * insertions.get() / size);
+      return Math.pow(filled, hashes);
+    }
+
+    private long index(long combined) {
+      return Math.floorMod(combined, size);
+    }
+
+    // FNV-1a over the UTF-16 chars, finished with the MurmurHash3 mixer
+    private static long hash(String value) {
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0; i < value.length(); i++) {
+        hash ^= value.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+      hash ^= hash >>> 33;
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= hash >>> 33;
+      hash *= 0xc4ceb9fe1a85ec53L;
+      hash ^= hash >>> 33;
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package dev.leighton.movies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+/**
+ * AND/OR filtering, facet counts and cursor paging over the genre bitmaps.
+ */
+class GenreIndexTest {
+
+  private final List<MovieCard> cards = List.of(
+    card("tt0000001", "Action", "Drama"),
+    card("tt0000002", "Action"),
+    card("tt0000003", "Drama", "Romance"),
+    card("tt0000004", "Comedy", "romance"),
+    card("tt0000005", "Action", "Drama", "Romance")
+  );
+
+  @Test
+  void matchAllIntersectsTheGenres() {
+    GenreIndex.GenreFacets facets = index().facets(List.of("action", "DRAMA"), true, null, 10);
+
+    assertThat(facets.total()).isEqualTo(2);
+    assertThat(imdbIds(facets)).containsExactly("tt0000001", "tt0000005");
+  }
+
+  @Test
+  void matchAnyUnitesTheGenres() {
+    GenreIndex.GenreFacets facets = index().facets(List.of("Comedy", "Romance"), false, null, 10);
+
+    assertThat(facets.total()).isEqualTo(3);
+    assertThat(imdbIds(facets)).containsExactly("tt0000003", "tt0000004", "tt0000005");
+  }
+
+  @Test
+  void countsGenresWithinTheMatchesLargestFirst() {
+    GenreIndex.GenreFacets facets = index().facets(List.of("Drama"), true, null, 10);
+
+    assertThat(facets.counts()).containsExactly(
+      Map.entry("Drama", 3),
+      Map.entry("Action", 2),
+      Map.entry("Romance", 2)
+    );
+  }
+
+  @Test
+  void noGenresMatchesEverythingAndUnknownGenresNothing() {
+    GenreIndex index = index();
+
+    assertThat(index.facets(null, true, null, 10).total()).isEqualTo(5);
+    assertThat(index.facets(List.of("Western"), false, null, 10).total()).isZero();
+    assertThat(index.facets(List.of("Action", "Western"), true, null, 10).total()).isZero();
+  }
+
+  @Test
+  void pagesThroughTheMatchesWithTheCursor() {
+    GenreIndex index = index();
+    List<String> seen = new ArrayList<>();
+    ObjectId after = null;
+    do {
+      GenreIndex.GenreFacets page = index.facets(List.of(), true, after, 2);
+      seen.addAll(imdbIds(page));
+      after = page.nextCursor() == null ? null : PageCursor.decode(page.nextCursor());
+    } while (after != null);
+
+    assertThat(seen)
+      .containsExactly("tt0000001", "tt0000002", "tt0000003", "tt0000004", "tt0000005");
+  }
+
+  @Test
+  void pagesInIdOrderAfterOutOfOrderUpdates() {
+    GenreIndex index = new GenreIndex();
+    index.rebuild(List.of(cards.get(3), cards.get(4)));
+    // Older _ids arriving after newer ones break the ordinal order
+    index.index(List.of(cards.get(0), cards.get(2), cards.get(1)));
+
+    GenreIndex.GenreFacets first = index.facets(List.of(), true, null, 3);
+    assertThat(imdbIds(first)).containsExactly("tt0000001", "tt0000002", "tt0000003");
+    GenreIndex.GenreFacets second = index.facets(
+      List.of(),
+      true,
+      PageCursor.decode(first.nextCursor()),
+      3
+    );
+    assertThat(imdbIds(second)).containsExactly("tt0000004", "tt0000005");
+    assertThat(second.nextCursor()).isNull();
+  }
+
+  @Test
+  void reindexAndRemoveUpdateTheBitmaps() {
+    GenreIndex index = index();
+    MovieCard moved = cards.get(1);
+    index.index(List.of(
+      new MovieCard(moved.getId(), moved.getImdbId(), "Moved", null, null, null, List.of("Comedy"))
+    ));
+    index.remove(List.of("tt0000004"));
+
+    assertThat(imdbIds(index.facets(List.of("Action"), true, null, 10)))
+      .containsExactly("tt0000001", "tt0000005");
+    assertThat(imdbIds(index.facets(List.of("Comedy"), true, null, 10)))
+      .containsExactly("tt0000002");
+    assertThat(index.find("tt0000004")).isNull();
+  }
+
+  @Test
+  void skipsNullAndBlankGenres() {
+    GenreIndex index = new GenreIndex();
+    index.rebuild(List.of(
+      new MovieCard(new ObjectId(), "tt0000001", "Odd", null, null, null, Arrays.asList("Drama", null, " "))
+    ));
+
+    assertThat(index.facets(Arrays.asList(null, "drama"), true, null, 10).counts())
+      .containsOnlyKeys("Drama");
+  }
+
+  private GenreIndex index() {
+    GenreIndex index = new GenreIndex();
+    index.rebuild(cards);
+    return index;
+  }
+
+  // Cards get increasing _ids in the order they are created
+  private static MovieCard card(String imdbId, String... genres) {
+    return new MovieCard(new ObjectId(), imdbId, imdbId, null, null, null, List.of(genres));
+  }
+
+  private static List<String> imdbIds(GenreIndex.GenreFacets facets) {
+    return facets.movies().stream().map(MovieCard::getImdbId).toList();
+  }
+}
@@ -0,0 +1,168 @@
+package dev.leighton.movies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * What MovieImporter counts: invalid and duplicate records, inserts, updates and
+ * unchanged movies on a re-import, and batches whose write fails.
+ */
+class MovieImporterTest {
+
+  private MongoServer server;
+
+  private MongoClient client;
+
+  private MongoTemplate mongoTemplate;
+
+  private MovieService movieService;
+
+  private CatalogIndexer catalogIndexer;
+
+  @BeforeEach
+  void setUp() {
+    server = new MongoServer(new MemoryBackend());
+    client = MongoClients.create(server.bindAndGetConnectionString());
+    mongoTemplate = new MongoTemplate(client, "movies");
+    movieService = mock(MovieService.class);
+    catalogIndexer = mock(CatalogIndexer.class);
+  }
+
+  @AfterEach
+  void tearDown() {
+    client.close();
+    server.shutdownNow();
+  }
+
+  @Test
+  void countsInvalidAndDuplicateRecords() {
+    MovieImporter.Result result = importer().importMovies(
+      input(
+        movie("tt0000001", "First"),
+        movie("tt0000002", "Second"),
+        movie("tt0000001", "First again"),
+        "{\"imdbId\":\"nope\",\"title\":\"Bad id\"}",
+        "{\"imdbId\":\"tt0000004\"}",
+        movie("tt0000003", "Third")
+      ),
+      "test"
+    );
+
+    assertThat(result.finished()).isTrue();
+    assertThat(result.abortedBy()).isNull();
+    assertThat(result.read()).isEqualTo(6);
+    assertThat(result.invalid()).isEqualTo(2);
+    assertThat(result.duplicates()).isEqualTo(1);
+    assertThat(result.inserted()).isEqualTo(3);
+    assertThat(result.failed()).isZero();
+    assertThat(result.batches()).isEqualTo(2);
+    assertThat(result.errors()).hasSize(2);
+    // The first copy of a duplicate wins
+    assertThat(title("tt0000001")).isEqualTo("First");
+    verify(catalogIndexer, atLeastOnce()).reindex(anyCollection());
+    verify(movieService).catalogChanged();
+  }
+
+  @Test
+  void reimportCountsUpdatedAndUnchangedMovies() {
+    importer().importMovies(
+      input(movie("tt0000001", "First"), movie("tt0000002", "Second"), movie("tt0000003", "Third")),
+      "first"
+    );
+
+    MovieImporter.Result result = importer().importMovies(
+      input(movie("tt0000001", "First"), movie("tt0000002", "Renamed"), movie("tt0000003", "Third")),
+      "second"
+    );
+
+    assertThat(result.inserted()).isZero();
+    assertThat(result.updated()).isEqualTo(1);
+    assertThat(result.unchanged()).isEqualTo(2);
+    assertThat(title("tt0000002")).isEqualTo("Renamed");
+    assertThat(mongoTemplate.getCollection("movies").countDocuments()).isEqualTo(3);
+  }
+
+  @Test
+  void countsEveryMovieOfAFailedBatch() {
+    MovieImporter importer = importer();
+    // Every write now fails before reaching the server
+    client.close();
+
+    MovieImporter.Result result = importer.importMovies(
+      input(movie("tt0000001", "First"), movie("tt0000002", "Second"), movie("tt0000003", "Third")),
+      "test"
+    );
+
+    assertThat(result.failed()).isEqualTo(3);
+    assertThat(result.inserted()).isZero();
+    assertThat(result.errors()).hasSize(2).allMatch(error -> error.startsWith("Bulk write of"));
+    verify(catalogIndexer, never()).reindex(anyCollection());
+    verify(movieService, never()).catalogChanged();
+  }
+
+  @Test
+  void stopsAtMalformedJsonAndKeepsWhatWasRead() {
+    MovieImporter.Result result = importer().importMovies(
+      input(movie("tt0000001", "First"), "{\"imdbId\": \"tt0000002\", \"title\": "),
+      "test"
+    );
+
+    assertThat(result.abortedBy()).startsWith("Malformed JSON after record 1");
+    assertThat(result.inserted()).isEqualTo(1);
+    assertThat(title("tt0000001")).isEqualTo("First");
+  }
+
+  private MovieImporter importer() {
+    MovieImporter importer = new MovieImporter();
+    ReflectionTestUtils.setField(importer, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(importer, "objectMapper", new ObjectMapper());
+    ReflectionTestUtils.setField(importer, "movieService", movieService);
+    ReflectionTestUtils.setField(importer, "catalogIndexer", catalogIndexer);
+    ReflectionTestUtils.setField(importer, "batchSize", 2);
+    ReflectionTestUtils.setField(importer, "parallelism", 2);
+    ReflectionTestUtils.setField(importer, "progressInterval", Duration.ofMinutes(1));
+    ReflectionTestUtils.setField(importer, "maxReportedErrors", 20);
+    return importer;
+  }
+
+  private String title(String imdbId) {
+    Document movie = mongoTemplate.findOne(
+      new Query(Criteria.where("imdbId").is(imdbId)),
+      Document.class,
+      "movies"
+    );
+    return movie == null ? null : movie.getString("title");
+  }
+
+  private static String movie(String imdbId, String title) {
+    return "{\"imdbId\":\"" + imdbId + "\",\"title\":\"" + title + "\",\"genres\":[\"Drama\"]}";
+  }
+
+  // Records as NDJSON
+  private static ByteArrayInputStream input(String... records) {
+    return new ByteArrayInputStream(
+      String.join("\n", records).getBytes(StandardCharsets.UTF_8)
+    );
+  }
+}
@@ -0,0 +1,93 @@
+package dev.leighton.movies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tokenizing, exact and prefix matching, ranking, and incremental updates of the
+ * title index.
+ */
+class MovieSearchIndexTest {
+
+  @Test
+  void tokenizeFoldsCaseAccentsAndPunctuation() {
+    assertThat(MovieSearchIndex.tokenize("Amélie: Le Fabuleux-Destin (2001)"))
+      .containsExactly("amelie", "le", "fabuleux", "destin", "2001");
+    assertThat(MovieSearchIndex.tokenize("  ...  ")).isEmpty();
+    assertThat(MovieSearchIndex.tokenize(null)).isEmpty();
+  }
+
+  @Test
+  void lastWordMatchesAsAPrefixAndTheOthersExactly() {
+    MovieSearchIndex index = index(
+      card("tt0000001", "The Dark Knight"),
+      card("tt0000002", "The Dark Tower"),
+      card("tt0000003", "Darkest Hour"),
+      card("tt0000004", "Dare Devil")
+    );
+
+    assertThat(imdbIds(index.search("dar", 10)))
+      .containsExactlyInAnyOrder("tt0000001", "tt0000002", "tt0000003", "tt0000004");
+    assertThat(imdbIds(index.search("the dark k", 10))).containsExactly("tt0000001");
+    // "dar" is complete here, so it has to match a whole word
+    assertThat(index.search("dar k", 10)).isEmpty();
+    assertThat(index.search("", 10)).isEmpty();
+  }
+
+  @Test
+  void ranksExactThenPrefixMatchesAndHonoursTheLimit() {
+    MovieSearchIndex index = index(
+      card("tt0000001", "Return of the King"),
+      card("tt0000002", "King"),
+      card("tt0000003", "King Kong")
+    );
+
+    assertThat(imdbIds(index.search("king", 10)))
+      .containsExactly("tt0000002", "tt0000003", "tt0000001");
+    assertThat(imdbIds(index.search("king", 2))).containsExactly("tt0000002", "tt0000003");
+  }
+
+  @Test
+  void reindexingAMovieReplacesItsTermsInPlace() {
+    MovieSearchIndex index = index(
+      card("tt0000001", "Old Title"),
+      card("tt0000002", "Other Film")
+    );
+
+    index.index(List.of(card("tt0000001", "New Title")));
+
+    assertThat(index.search("old", 10)).isEmpty();
+    assertThat(imdbIds(index.search("new ti", 10))).containsExactly("tt0000001");
+    assertThat(imdbIds(index.search("title", 10))).containsExactly("tt0000001");
+    assertThat(index.stats()).containsEntry("movies", 2);
+  }
+
+  @Test
+  void indexAddsNewMoviesAndRemoveDropsThem() {
+    MovieSearchIndex index = index(card("tt0000001", "Storm"));
+
+    index.index(List.of(card("tt0000002", "Stormbreaker")));
+    assertThat(imdbIds(index.search("storm", 10)))
+      .containsExactlyInAnyOrder("tt0000001", "tt0000002");
+
+    index.remove(List.of("tt0000001"));
+    assertThat(imdbIds(index.search("storm", 10))).containsExactly("tt0000002");
+    assertThat(index.stats()).containsEntry("movies", 1);
+  }
+
+  private static MovieSearchIndex index(MovieCard... cards) {
+    MovieSearchIndex index = new MovieSearchIndex();
+    index.rebuild(List.of(cards));
+    return index;
+  }
+
+  private static MovieCard card(String imdbId, String title) {
+    return new MovieCard(null, imdbId, title, null, null, null, List.of());
+  }
+
+  private static List<String> imdbIds(List<MovieCard> cards) {
+    return cards.stream().map(MovieCard::getImdbId).toList();
+  }
+}
@@ -0,0 +1,85 @@
+package dev.leighton.movies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Burst and refill behaviour of the GCRA buckets.
+ */
+class RateLimiterTest {
+
+  private RateLimiter limiter;
+
+  // One permit every 50 ms, up to 3 at once
+  private final RateLimitProperties.Limit limit = limit(20, Duration.ofSeconds(1), 3);
+
+  @BeforeEach
+  void setUp() {
+    limiter = new RateLimiter();
+    ReflectionTestUtils.setField(limiter, "properties", new RateLimitProperties());
+  }
+
+  @Test
+  void admitsABurstThenAsksToWaitAboutOneInterval() {
+    for (int i = 0; i < 3; i++) {
+      assertThat(limiter.tryAcquire("client", limit)).isZero();
+    }
+    long wait = limiter.tryAcquire("client", limit);
+
+    assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  void refillsOnePermitPerInterval() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      limiter.tryAcquire("client", limit);
+    }
+    long wait = limiter.tryAcquire("client", limit);
+    assertThat(wait).isPositive();
+
+    TimeUnit.NANOSECONDS.sleep(wait + TimeUnit.MILLISECONDS.toNanos(5));
+
+    assertThat(limiter.tryAcquire("client", limit)).isZero();
+    // Only one permit came back, not the whole burst
+    assertThat(limiter.tryAcquire("client", limit)).isPositive();
+  }
+
+  @Test
+  void rejectedRequestsDoNotUseUpPermits() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      limiter.tryAcquire("client", limit);
+    }
+    long wait = 0;
+    for (int i = 0; i < 10; i++) {
+      wait = limiter.tryAcquire("client", limit);
+    }
+
+    TimeUnit.NANOSECONDS.sleep(wait + TimeUnit.MILLISECONDS.toNanos(5));
+
+    assertThat(limiter.tryAcquire("client", limit)).isZero();
+  }
+
+  @Test
+  void keysHaveSeparateBuckets() {
+    for (int i = 0; i < 3; i++) {
+      limiter.tryAcquire("first", limit);
+    }
+
+    assertThat(limiter.tryAcquire("first", limit)).isPositive();
+    assertThat(limiter.tryAcquire("second", limit)).isZero();
+    assertThat(limiter.size()).isEqualTo(2);
+  }
+
+  private static RateLimitProperties.Limit limit(int permits, Duration period, int burst) {
+    RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+    limit.setPermits(permits);
+    limit.setPeriod(period);
+    limit.setBurst(burst);
+    return limit;
+  }
+}
@@ -0,0 +1,165 @@
+package dev.leighton.movies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Counts the find commands ReviewLoader sends: one for the movies, then one per
+ * batch of referenced review IDs, however many movies there are.
+ */
+class ReviewLoaderTest {
+
+  private MongoServer server;
+
+  private MongoClient client;
+
+  private MongoTemplate mongoTemplate;
+
+  // Target collection of every find command sent, in order
+  private final List<String> finds = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    server = new MongoServer(new MemoryBackend());
+    String uri = server.bindAndGetConnectionString();
+    CommandListener listener = new CommandListener() {
+      @Override
+      public void commandStarted(CommandStartedEvent event) {
+        if (event.getCommandName().equals("find")) {
+          finds.add(event.getCommand().getString("find").getValue());
+        }
+      }
+    };
+    client = MongoClients.create(
+      MongoClientSettings.builder()
+        .applyConnectionString(new ConnectionString(uri + "/movies"))
+        .addCommandListener(listener)
+        .build()
+    );
+    mongoTemplate = new MongoTemplate(client, "movies");
+  }
+
+  @AfterEach
+  void tearDown() {
+    client.close();
+    server.shutdownNow();
+  }
+
+  @Test
+  void fetchesReviewsInBatches() {
+    // 12 movies with 0 to 11 reviews each: 66 references
+    int references = seed(12);
+    ReviewLoader loader = loader(10);
+
+    finds.clear();
+    List<Movie> movies = loader.findMovies(new Query());
+
+    assertThat(movies).hasSize(12);
+    assertThat(movies.stream().mapToInt(movie -> movie.getReviewIds().size()).sum())
+      .isEqualTo(references);
+    int reviewBatches = (references + 9) / 10;
+    assertThat(finds).hasSize(1 + reviewBatches);
+    assertThat(finds.get(0)).isEqualTo("movies");
+    assertThat(finds.subList(1, finds.size())).containsOnly("reviews");
+  }
+
+  @Test
+  void fetchesAllReviewsInOneQueryWhenTheyFitInABatch() {
+    int references = seed(5);
+    ReviewLoader loader = loader(500);
+
+    finds.clear();
+    List<Movie> movies = loader.findMovies(new Query());
+
+    assertThat(movies.stream().mapToInt(movie -> movie.getReviewIds().size()).sum())
+      .isEqualTo(references);
+    assertThat(finds).containsExactly("movies", "reviews");
+  }
+
+  @Test
+  void skipsTheReviewQueryWhenNothingIsReferenced() {
+    seed(1);
+    ReviewLoader loader = loader(10);
+
+    finds.clear();
+    List<Movie> movies = loader.findMovies(new Query());
+
+    assertThat(movies).hasSize(1);
+    assertThat(movies.get(0).getReviewIds()).isEmpty();
+    assertThat(finds).containsExactly("movies");
+  }
+
+  @Test
+  void keepsReferenceOrderAndSkipsDanglingIds() {
+    ObjectId first = new ObjectId();
+    ObjectId second = new ObjectId();
+    mongoTemplate.insert(new Document("_id", first).append("body", "first"), "reviews");
+    mongoTemplate.insert(new Document("_id", second).append("body", "second"), "reviews");
+    mongoTemplate.insert(
+      new Document("imdbId", "tt0000001")
+        .append("title", "Movie")
+        .append("reviewIds", List.of(second, new ObjectId(), first)),
+      "movies"
+    );
+
+    List<Movie> movies = loader(10).findMovies(new Query());
+
+    assertThat(movies.get(0).getReviewIds())
+      .extracting(Review::getBody)
+      .containsExactly("second", "first");
+  }
+
+  private ReviewLoader loader(int batchSize) {
+    ReviewLoader loader = new ReviewLoader();
+    ReflectionTestUtils.setField(loader, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(loader, "batchSize", batchSize);
+    return loader;
+  }
+
+  // Inserts movies where movie i references i reviews; returns the total references
+  private int seed(int movieCount) {
+    int references = 0;
+    for (int i = 0; i < movieCount; i++) {
+      List<ObjectId> reviewIds = new ArrayList<>();
+      for (int j = 0; j < i; j++) {
+        ObjectId id = new ObjectId();
+        mongoTemplate.insert(
+          new Document("_id", id).append("imdbId", imdb(i)).append("body", "review " + j),
+          "reviews"
+        );
+        reviewIds.add(id);
+      }
+      mongoTemplate.insert(
+        new Document("imdbId", imdb(i))
+          .append("title", "Movie " + i)
+          .append("reviewIds", reviewIds),
+        "movies"
+      );
+      references += reviewIds.size();
+    }
+    return references;
+  }
+
+  private static String imdb(int i) {
+    return String.format("tt%07d", i);
+  }
+}
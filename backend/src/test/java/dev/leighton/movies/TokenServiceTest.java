@@ -0,0 +1,83 @@
+package dev.leighton.movies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trip, tampering and expiry of the signed auth tokens.
+ */
+class TokenServiceTest {
+
+  @Test
+  void verifiesItsOwnTokens() throws Exception {
+    TokenService tokens = new TokenService("test-secret", Duration.ofHours(1));
+
+    assertThat(tokens.verify(tokens.issue("alice"))).contains("alice");
+    // The username may itself contain the separator
+    assertThat(tokens.verify(tokens.issue("a|b"))).contains("a|b");
+  }
+
+  @Test
+  void rejectsATamperedPayload() throws Exception {
+    TokenService tokens = new TokenService("test-secret", Duration.ofHours(1));
+    String token = tokens.issue("alice");
+    String signature = token.substring(token.indexOf('.'));
+    String claims = new String(decode(token.substring(0, token.indexOf('.'))), StandardCharsets.UTF_8);
+
+    String forged = encode(claims.replace("alice", "admin")) + signature;
+
+    assertThat(tokens.verify(forged)).isEmpty();
+  }
+
+  @Test
+  void rejectsATamperedSignature() throws Exception {
+    TokenService tokens = new TokenService("test-secret", Duration.ofHours(1));
+    String token = tokens.issue("alice");
+    byte[] signature = decode(token.substring(token.indexOf('.') + 1));
+    signature[0] ^= 1;
+
+    String forged = token.substring(0, token.indexOf('.') + 1) +
+      Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+
+    assertThat(tokens.verify(forged)).isEmpty();
+  }
+
+  @Test
+  void rejectsTokensSignedWithAnotherSecret() throws Exception {
+    TokenService issuer = new TokenService("other-secret", Duration.ofHours(1));
+    TokenService tokens = new TokenService("test-secret", Duration.ofHours(1));
+
+    assertThat(tokens.verify(issuer.issue("alice"))).isEmpty();
+  }
+
+  @Test
+  void rejectsExpiredTokens() throws Exception {
+    TokenService tokens = new TokenService("test-secret", Duration.ZERO);
+
+    assertThat(tokens.verify(tokens.issue("alice"))).isEmpty();
+  }
+
+  @Test
+  void rejectsMalformedTokens() throws Exception {
+    TokenService tokens = new TokenService("test-secret", Duration.ofHours(1));
+
+    assertThat(tokens.verify("")).isEmpty();
+    assertThat(tokens.verify("no-dot")).isEmpty();
+    assertThat(tokens.verify(".signature")).isEmpty();
+    assertThat(tokens.verify("!!!.???")).isEmpty();
+  }
+
+  private static byte[] decode(String value) {
+    return Base64.getUrlDecoder().decode(value);
+  }
+
+  private static String encode(String value) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(
+      value.getBytes(StandardCharsets.UTF_8)
+    );
+  }
+}